@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.*;
+
+// runs the test classes of UnitTests with --cache, first filling the cache and then answering from it
+@RunWith(Parameterized.class)
+public class CacheTests {
+
+	// options to fill and read the cache with, besides --cache
+	static final String[][] OPTIONS = {
+			{},
+			// stores the method verdicts on its own path
+			{ "--domain", "portfolio" },
+	};
+
+	PrintStream stdOut;
+	File cacheDir;
+
+	@Before
+	public void before() throws IOException {
+		stdOut = System.out;
+		cacheDir = Files.createTempDirectory("verifier-cache").toFile();
+	}
+
+	@After
+	public void after() {
+		System.setOut(stdOut);
+		File[] entries = cacheDir.listFiles();
+		if (entries != null)
+			for (File entry : entries)
+				entry.delete();
+		cacheDir.delete();
+	}
+
+	@Test
+	public void test() throws IOException {
+		// a cold run stores the verdicts of the class and of its methods
+		assertVerdict();
+		File[] entries = cacheDir.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".result");
+			}
+		});
+		// classes that never weld are answered before the cache is looked at
+		assertEquals("\nCACHED:", welds(), entries.length > 0);
+
+		// a warm run finds the class's
+		assertVerdict();
+
+		// without one of the entries, the rest must still give the same verdict: without the class's, it comes from its methods'
+		for (File entry : entries) {
+			File aside = new File(entry.getPath() + ".aside");
+			assertTrue(entry.renameTo(aside));
+			assertVerdict();
+			entry.delete();
+			assertTrue(aside.renameTo(entry));
+		}
+	}
+
+	private void assertVerdict() {
+		String[] options = Arrays.copyOf(mOptions, mOptions.length + 2);
+		options[mOptions.length] = "--cache";
+		options[mOptions.length + 1] = cacheDir.getPath();
+		UnitTests.assertVerdict(mNameOfClass, mExpWeldAt, mExpWeldBet, true, stdOut, options);
+	}
+
+	private boolean welds() throws IOException {
+		InputStream in = getClass().getResourceAsStream("/" + mNameOfClass + ".class");
+		ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n; (n = in.read(buffer)) > 0;)
+			bytecode.write(buffer, 0, n);
+		in.close();
+		String text = new String(bytecode.toByteArray(), "ISO-8859-1");
+		return text.contains("weldAt") || text.contains("weldBetween");
+	}
+
+	@Parameter(0)
+	public String mName;
+	@Parameter(1)
+	public String[] mOptions;
+	@Parameter(2)
+	public String mNameOfClass;
+	@Parameter(3)
+	public boolean mExpWeldAt;
+	@Parameter(4)
+	public boolean mExpWeldBet;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> data() {
+		List<Object[]> data = new ArrayList<Object[]>();
+		for (Object[] test : UnitTests.data())
+			for (String[] options : OPTIONS)
+				data.add(new Object[] { test[0] + " " + Arrays.toString(options), options, test[0], test[1], test[2] });
+		return data;
+	}
+}
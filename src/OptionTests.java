@@ -0,0 +1,88 @@
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.*;
+
+// runs the test classes of UnitTests again with each of the options that change how the analysis works
+@RunWith(Parameterized.class)
+public class OptionTests {
+
+	// options which are expected to give exactly the verdicts of the default analysis
+	static final String[][] PRECISE = {
+			{ "-j", "4" },
+			{ "--domain", "tiered" },
+			{ "--domain", "portfolio" },
+			{ "--liveness" },
+			{ "--engine", "wto" },
+			{ "--accelerate" },
+			{ "--intern" },
+			{ "--abstract0" },
+			{ "--engine", "blocks" },
+			{ "--engine", "blocks", "--prune" },
+			{ "--slice" },
+			{ "--prune" },
+	};
+	// options which only have to be sound, since they may lose precision
+	static final String[][] SOUND = {
+			// only as precise as intervals
+			{ "--engine", "sparse", "--domain", "box" },
+			// variables in different packs lose their relations
+			{ "--packing" },
+			// widen after fewer joins
+			{ "--widening", "thresholds" },
+			{ "--narrowing", "2" },
+			{ "--widening-delay", "adaptive" },
+	};
+
+	PrintStream stdOut;
+
+	@Before
+	public void before() {
+		stdOut = System.out;
+	}
+
+	@After
+	public void after() {
+		System.setOut(stdOut);
+	}
+
+	@Test
+	public void test() {
+		UnitTests.assertVerdict(mNameOfClass, mExpWeldAt, mExpWeldBet, mPrecise, stdOut, mOptions);
+	}
+
+	@Parameter(0)
+	public String mName;
+	@Parameter(1)
+	public String[] mOptions;
+	@Parameter(2)
+	public boolean mPrecise;
+	@Parameter(3)
+	public String mNameOfClass;
+	@Parameter(4)
+	public boolean mExpWeldAt;
+	@Parameter(5)
+	public boolean mExpWeldBet;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> data() {
+		List<Object[]> data = new ArrayList<Object[]>();
+		for (Object[] test : UnitTests.data()) {
+			for (String[] options : PRECISE)
+				data.add(new Object[] { test[0] + " " + join(options), options, true, test[0], test[1], test[2] });
+			for (String[] options : SOUND)
+				data.add(new Object[] { test[0] + " " + join(options), options, false, test[0], test[1], test[2] });
+		}
+		return data;
+	}
+
+	private static String join(String[] options) {
+		StringBuilder joined = new StringBuilder();
+		for (String option : options)
+			joined.append(joined.length() == 0 ? "" : " ").append(option);
+		return joined.toString();
+	}
+}
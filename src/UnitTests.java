@@ -32,10 +32,34 @@ public class UnitTests {
 	@Test
 	public void test() {
 		// The correct results of weldAt and weldBetween
-		boolean expectedWeldAt = mExpWeldAt;
-		boolean expectedWeldBetween = mExpWeldBet;
-		String[] nameOfTest = { mNameOfClass };
+		assertVerdict(mNameOfClass, mExpWeldAt, mExpWeldBet, true, stdOut);
+	}
+
+	// runs the Verifier on a class with the given options and fails if its verdict is unsound, or if precise, not the expected one
+	static void assertVerdict(String nameOfClass, boolean expectedWeldAt, boolean expectedWeldBetween, boolean precise, PrintStream stdOut,
+			String... options) {
+		String[] args = Arrays.copyOf(options, options.length + 1);
+		args[options.length] = nameOfClass;
+
+		String[] lines = runVerifier(args, stdOut);
 
+		boolean actualWeldAt = lines[lines.length - 2].equals(nameOfClass + " WELD_AT_OK");
+		boolean actualWeldBetween = lines[lines.length - 1].equals(nameOfClass + " WELD_BETWEEN_OK");
+		String with = options.length == 0 ? "" : " with " + Arrays.toString(options);
+
+		// error on unsoundness
+		if (!expectedWeldAt && actualWeldAt || !expectedWeldBetween && actualWeldBetween)
+			throw new RuntimeException("UNSOUND" + with + "!");
+
+		if (!precise)
+			return;
+		// assert precision
+		assertEquals("\nWELD_AT FAILED" + with + ":" + expectedWeldAt + " " + actualWeldAt, expectedWeldAt, actualWeldAt);
+		assertEquals("\nWELD_BETWEEN FAILED" + with + ":", expectedWeldBetween, actualWeldBetween);
+	}
+
+	// runs the Verifier with the given arguments and returns the lines it printed, echoing them to stdOut
+	private static String[] runVerifier(String[] args, PrintStream stdOut) {
 		ByteArrayOutputStream outContent = new ByteArrayOutputStream();
 
 		outContent.reset();
@@ -44,28 +68,19 @@ public class UnitTests {
 		System.setOut(new PrintStream(outContent));
 		while (true) // sometimes there are weird errors (which are hopefully not our fault) that resolve upon retrying
 			try {
-				Verifier.main(nameOfTest.clone());
+				Verifier.main(args.clone());
 				break;
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
+		System.setOut(stdOut);
 
 		// split up the output
 		String[] lines = outContent.toString().split("\n");
 
 		stdOut.println(outContent);
 		stdOut.println("Penultimate: " + lines[lines.length - 2]);
-
-		boolean actualWeldAt = lines[lines.length - 2].equals(mNameOfClass + " WELD_AT_OK");
-		boolean actualWeldBetween = lines[lines.length - 1].equals(mNameOfClass + " WELD_BETWEEN_OK");
-
-		// error on unsoundness
-		if (!expectedWeldAt && actualWeldAt || !expectedWeldBetween && actualWeldBetween)
-			throw new RuntimeException("UNSOUND!");
-
-		// assert precision
-		assertEquals("\nWELD_AT FAILED:" + expectedWeldAt + " " + actualWeldAt, expectedWeldAt, actualWeldAt);
-		assertEquals("\nWELD_BETWEEN FAILED:", expectedWeldBetween, actualWeldBetween);
+		return lines;
 	}
 
 	@Parameter(0)
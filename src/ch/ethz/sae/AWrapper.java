@@ -1,6 +1,7 @@
 package ch.ethz.sae;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import soot.Value;
 import apron.*;
@@ -10,9 +11,23 @@ public class AWrapper {
 
     private Abstract1 elem;
     Manager man;
+    // wrappers with the same stamp hold equal states, so comparing them needs no native call
+    private long stamp;
 
-    public AWrapper(Abstract1 e) {
+    private static final AtomicLong lastStamp = new AtomicLong();
+
+    public AWrapper(Abstract1 e, Manager man) {
         elem = e;
+        this.man = man;
+        stamp = newStamp();
+    }
+
+    static long newStamp() {
+        return lastStamp.incrementAndGet();
+    }
+
+    long getStamp() {
+        return stamp;
     }
 
     public Abstract1 get() {
@@ -20,21 +35,31 @@ public class AWrapper {
     }
 
     public void set(Abstract1 e) {
+        set(e, newStamp());
+    }
+
+    // sets a state known to be equal to the one the stamp was given to
+    void set(Abstract1 e, long stamp) {
         elem = e;
+        this.stamp = stamp;
     }
 
     public void copy(AWrapper src) {
         this.elem = src.get();
+        this.stamp = src.stamp;
     }
 
     public boolean equals(Object o) {
-        Abstract1 t = ((AWrapper) o).get();
+        AWrapper other = (AWrapper) o;
+        if (stamp == other.stamp) {
+            Stats.add("equals.stampHits", 1);
+            return true;
+        }
         try {
-            if (elem.isEqual(man, t) != elem.isIncluded(man, t))
-                System.out.println("VIOLA");
-            return elem.isIncluded(man, t);
+            Stats.add("equals.nativeCalls", 1);
+            return elem.isIncluded(man, other.elem);
         } catch (ApronException e) {
-            System.err.println("isEqual failed");
+            System.err.println("isIncluded failed");
             System.exit(-1);
         }
         return false;
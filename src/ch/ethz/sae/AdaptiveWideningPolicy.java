@@ -0,0 +1,78 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.*;
+import soot.jimple.*;
+import soot.jimple.toolkits.annotation.logic.Loop;
+
+// picks a widening delay per loop from its shape
+public class AdaptiveWideningPolicy extends FixedWideningDelay {
+
+	// counting loops are cheap to iterate and their bound is recovered by thresholds or narrowing anyway
+	static final int COUNTER_LOOP_DELAY = 2;
+
+	// defaultDelay is used for loops that are neither counting loops nor unbounded
+	public AdaptiveWideningPolicy(Body body, Collection<Loop> loops, int defaultDelay) {
+		super(body, loops, defaultDelay);
+	}
+
+	@Override
+	int delayOf(Loop loop) {
+		if (isUnbounded(loop)) {
+			Stats.add("widening.unbounded.loops", 1);
+			return 0;
+		} else if (isCounterLoop(loop)) {
+			Stats.add("widening.counter.loops", 1);
+			return Math.min(delay, COUNTER_LOOP_DELAY);
+		}
+		Stats.add("widening.other.loops", 1);
+		return delay;
+	}
+
+	// without a numerical exit condition, nothing bounds the head state, so waiting before widening gains nothing
+	private static boolean isUnbounded(Loop loop) {
+		if (loop.loopsForever())
+			return true;
+		for (Stmt exit : loop.getLoopExits())
+			if (exit instanceof IfStmt && comparesInts(((IfStmt) exit).getCondition()))
+				return false;
+		return true;
+	}
+
+	private static boolean comparesInts(Value condition) {
+		for (ValueBox use : condition.getUseBoxes())
+			if (use.getValue().getType() instanceof IntegerType)
+				return true;
+		return false;
+	}
+
+	// a loop exiting when a variable reaches a constant, which the loop steps by a constant
+	private static boolean isCounterLoop(Loop loop) {
+		for (Stmt exit : loop.getLoopExits()) {
+			if (!(exit instanceof IfStmt))
+				continue;
+			ConditionExpr cond = (ConditionExpr) ((IfStmt) exit).getCondition();
+			Value counter = cond.getOp2() instanceof IntConstant ? cond.getOp1() : cond.getOp1() instanceof IntConstant ? cond.getOp2() : null;
+			if (counter instanceof Local && isSteppedByConstant((Local) counter, loop))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isSteppedByConstant(Local counter, Loop loop) {
+		boolean stepped = false;
+		for (Stmt s : loop.getLoopStatements()) {
+			if (!(s instanceof DefinitionStmt) || ((DefinitionStmt) s).getLeftOp() != counter)
+				continue;
+			Value rhs = ((DefinitionStmt) s).getRightOp();
+			if (!(rhs instanceof AddExpr || rhs instanceof SubExpr))
+				return false;
+			BinopExpr step = (BinopExpr) rhs;
+			if (!(step.getOp1() == counter && step.getOp2() instanceof IntConstant) && !(step.getOp2() == counter && step.getOp1() instanceof IntConstant))
+				return false;
+			stepped = true;
+		}
+		return stepped;
+	}
+}
@@ -1,23 +1,32 @@
 package ch.ethz.sae;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 import apron.*;
 import soot.*;
 import soot.jimple.*;
 import soot.jimple.internal.*;
 import soot.jimple.toolkits.annotation.logic.Loop;
+import soot.toolkits.graph.Block;
+import soot.toolkits.graph.BlockGraph;
 import soot.toolkits.graph.LoopNestTree;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.ForwardBranchedFlowAnalysis;
+import soot.toolkits.scalar.SimpleLiveLocals;
 import soot.util.Chain;
 
 // Implement your numerical analysis here.
-public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
+public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> implements NumericalAnalysis {
 
-	private static final int WIDENING_THRESHOLD = 6;
+	static final int WIDENING_THRESHOLD = 6;
+	// thresholds keep the bounds that matter, so widening can start much earlier with them
+	static final int THRESHOLD_WIDENING_DELAY = 2;
+	// the descending phase recovers what widening loses, so widening can start on the first revisit
+	static final int NARROWING_WIDENING_DELAY = 1;
 
-	private HashMap<Unit, Counter> loopHeads, backJumps;
+	private Collection<Loop> loops;
+	private Set<Unit> loopHeads;
 
 	private void recordIntLocalVars() {
 
@@ -72,6 +81,10 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 
 		recordIntLocalVars();
 		recordIntClassVars();
+		if (tracked != null) {
+			local_ints = trackedOnly(local_ints);
+			class_ints = trackedOnly(class_ints);
+		}
 
 		//Logger.log("local vars:", Arrays.toString(local_ints));
 		//Logger.log("class vars:", Arrays.toString(class_ints));
@@ -91,31 +104,202 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 		env = new Environment(ints, reals);
 	}
 
+	private String[] trackedOnly(String[] vars) {
+		List<String> kept = new ArrayList<String>();
+		for (String var : vars)
+			if (tracked.contains(var))
+				kept.add(var);
+		return kept.toArray(new String[kept.size()]);
+	}
+
 	/* Instantiate a domain. */
 	private void instantiateDomain() {
-		man = new Polka(true);
+		man = domain.newManager();
 	}
 
 	/* === Constructor === */
 	public Analysis(UnitGraph g, SootClass jc) {
+		this(g, jc, Domain.POLKA, new LoopNestTree(g.getBody()));
+	}
+
+	// the loops are passed in because finding them touches Soot's global state, while the analysis itself may run on any thread
+	public Analysis(UnitGraph g, SootClass jc, Domain domain, Collection<Loop> loops) {
+		this(g, jc, domain, loops, null);
+	}
+
+	// only tracks the given variables (or all of them if null); statements involving any others are ignored
+	public Analysis(UnitGraph g, SootClass jc, Domain domain, Collection<Loop> loops, Set<String> tracked) {
 		super(g);
 
 		this.g = g;
 		this.jclass = jc;
+		this.domain = domain;
+		this.tracked = tracked;
 
 		buildEnvironment();
 		instantiateDomain();
 
-		loopHeads = new HashMap<Unit, Counter>();
-		backJumps = new HashMap<Unit, Counter>();
-		for (Loop l : new LoopNestTree(g.getBody())) {
-			loopHeads.put(l.getHead(), new Counter(0));
-			backJumps.put(l.getBackJumpStmt(), new Counter(0));
-		}
+		this.loops = loops;
+		loopHeads = new HashSet<Unit>();
+		for (Loop l : loops)
+			loopHeads.add(l.getHead());
 	}
 
-	void run() {
+	public void run() {
+		if (policy == null)
+			policy = new FixedWideningDelay(g.getBody(), loops, wideningDelay);
+		Set<Unit> reachable = reachableUnits();
+		for (Unit op : g)
+			compiled.put(op, reachable.contains(op) ? compile(op) : Transfer.UNREACHABLE);
 		doAnalysis();
+		descend();
+		String engine = (blockOrder != null ? Engine.BLOCKS : wto == null ? Engine.WORKLIST : Engine.WTO).toString();
+		Stats.add(engine + ".transfers", transfers);
+		Stats.add(engine + ".joins", joins);
+		Stats.add(engine + ".copies", copies);
+		if (store != null) {
+			Logger.log("Peak size of the states in", domain + ":", store.getPeakSize());
+			Stats.max("store.peakSize", store.getPeakSize());
+			Stats.max("store.peakSize." + g.getBody().getMethod().getSignature() + "." + domain, store.getPeakSize());
+			Stats.add("store.hits", store.getHits());
+		}
+	}
+
+	// makes the analysis assign the given constants instead of computing the right-hand sides of these definitions
+	void foldConstants(Map<Unit, IntConstant> folded) {
+		this.folded = folded;
+	}
+
+	// makes the analysis compile statements to the dimensions of the underlying Abstract0 instead of variable names
+	void compileToDimensions() {
+		dimensions = true;
+	}
+
+	// makes the analysis keep every state only once, shared by all program points holding an equal one
+	void internStates() {
+		store = new StateStore(man);
+	}
+
+	// the stored state equal to the given one, if states are interned; states set to wrappers must not be modified afterwards
+	private Abstract1 shared(Abstract1 state) throws ApronException {
+		return store == null ? state : store.intern(state);
+	}
+
+	void useWideningPolicy(WideningPolicy policy) {
+		this.policy = policy;
+	}
+
+	// makes the analysis compute the head states of the given loops in one step instead of iterating them
+	void accelerate(Map<Unit, CountingLoop> countingLoops) {
+		this.countingLoops = countingLoops;
+	}
+
+	// the number of joins at a loop head before widening, given the options so far
+	int getWideningDelay() {
+		return wideningDelay;
+	}
+
+	// makes the analysis re-apply all statements for the given number of rounds after reaching its fixpoint
+	void narrowAfterWidening(int rounds) {
+		descendingRounds = rounds;
+		wideningDelay = Math.min(wideningDelay, NARROWING_WIDENING_DELAY);
+	}
+
+	// starting from a post-fixpoint, every round of plain transfers and joins (no widening) yields a smaller post-fixpoint
+	private void descend() {
+		for (int round = 0; round < descendingRounds; round++) {
+			if (blocks != null) {
+				for (Block block : blocks) {
+					unitToBeforeFlow.put(block.getHead(), joinPredecessors(block.getHead()));
+					applyBlock(block);
+				}
+				continue;
+			}
+			for (Unit op : g) {
+				unitToBeforeFlow.put(op, joinPredecessors(op));
+				apply(op);
+			}
+		}
+	}
+
+	// makes the analysis iterate along the given ordering instead of Soot's worklist
+	void iterateAlong(WeakTopologicalOrder<Unit> wto) {
+		this.wto = wto;
+	}
+
+	// makes the analysis iterate along the given ordering of basic blocks, keeping states only where they start and end
+	void iterateBlocks(BlockGraph blocks, WeakTopologicalOrder<Block> order) {
+		this.blocks = blocks;
+		this.blockOrder = order;
+		blockOf = new HashMap<Unit, Block>();
+		for (Block block : blocks)
+			for (Unit op : block)
+				blockOf.put(op, block);
+	}
+
+	// integer locals that are dead after each statement, by Soot's live-local analysis
+	static Map<Unit, String[]> deadVariables(UnitGraph g) {
+		SimpleLiveLocals liveness = new SimpleLiveLocals(g);
+		Map<Unit, String[]> dead = new HashMap<Unit, String[]>();
+		for (Unit op : g) {
+			// only variables that were live before or are defined here can die here, everything else is top already
+			Set<Local> dying = new HashSet<Local>(liveness.getLiveLocalsBefore(op));
+			for (ValueBox def : op.getDefBoxes())
+				if (def.getValue() instanceof Local)
+					dying.add((Local) def.getValue());
+			dying.removeAll(liveness.getLiveLocalsAfter(op));
+			List<String> names = new ArrayList<String>();
+			for (Local local : dying)
+				if (local.getType() instanceof IntegerType)
+					names.add(local.getName());
+			if (!names.isEmpty())
+				dead.put(op, names.toArray(new String[names.size()]));
+		}
+		return dead;
+	}
+
+	// makes the analysis forget the given variables after each statement, keeping the states small
+	void forgetAfter(Map<Unit, String[]> dead) {
+		deadAfter = new HashMap<Unit, String[]>();
+		for (Map.Entry<Unit, String[]> entry : dead.entrySet()) {
+			List<String> names = new ArrayList<String>();
+			for (String name : entry.getValue())
+				if (env.hasVar(name))
+					names.add(name);
+			if (!names.isEmpty())
+				deadAfter.put(entry.getKey(), names.toArray(new String[names.size()]));
+		}
+	}
+
+	// makes widening keep any of the bounds v <= c and v >= c that still hold, and start after fewer joins
+	void widenWithThresholds(Collection<Integer> constants) {
+		List<Lincons1> bounds = new ArrayList<Lincons1>();
+		for (Var var : env.getIntVars()) {
+			for (int c : constants) {
+				// v - c >= 0 and c - v >= 0
+				bounds.add(new Lincons1(Lincons1.SUPEQ, new Linexpr1(env, new Linterm1[] { new Linterm1(var, new MpqScalar(1)) }, new MpqScalar(-c))));
+				bounds.add(new Lincons1(Lincons1.SUPEQ, new Linexpr1(env, new Linterm1[] { new Linterm1(var, new MpqScalar(-1)) }, new MpqScalar(c))));
+			}
+		}
+		thresholds = bounds.toArray(new Lincons1[bounds.size()]);
+		wideningDelay = Math.min(wideningDelay, THRESHOLD_WIDENING_DELAY);
+	}
+
+	private Abstract1 widen(Abstract1 a1, Abstract1 a2) throws ApronException {
+		if (thresholds == null)
+			return a1.widening(man, a2);
+		return a1.wideningThreshold(man, a2, thresholds);
+	}
+
+	// set from another thread to abandon the analysis at the next statement
+	private volatile boolean cancelled = false;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public Domain getDomain() {
+		return domain;
 	}
 
 	// debug output for uncaught conversion cases
@@ -154,65 +338,88 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 		return null;
 	}
 
-	/// computes the output states of applying a definition statement
-	static void applyDef(DefinitionStmt def, Abstract1 fall, Abstract1 branch) throws ApronException {
-		final boolean verbose = false;
-
-		// split into operands
-		Value lhs = def.getLeftOp(), rhs = def.getRightOp();
-		if (verbose) Logger.log("Definition of", lhs, "(" + lhs.getClass() + ")", "as", rhs, "(" + rhs.getClass() + ")");
-
-		// parse expressions on either side
-		String var = ((JimpleLocal) lhs).getName(); // local variable to assign to
-		Texpr1Node expr = toExpr(rhs);
-		if (verbose) Logger.log("expr:", expr);
+	// classifies the statement once, so that flowThrough needs neither instanceof chains nor exceptions to handle it
+	private Transfer compile(Unit op) {
+		if (op instanceof DefinitionStmt) {
+			Value lhs = ((DefinitionStmt) op).getLeftOp(), rhs = ((DefinitionStmt) op).getRightOp();
+			if (folded != null && folded.containsKey(op))
+				rhs = folded.get(op);
+			// only assignments to integer locals change the state
+			if (!(lhs instanceof JimpleLocal) || !isTracked(lhs))
+				return Transfer.IDENTITY;
+			String var = ((JimpleLocal) lhs).getName(); // local variable to assign to
+			if (isTracked(rhs)) {
+				try {
+					Transfer transfer = dimensions ? DimTransfer.assign(env, var, rhs) : Transfer.assign(var, new Texpr1Intern(env, toExpr(rhs)));
+					if (transfer != null)
+						return transfer;
+				} catch (IllegalArgumentException e) {
+					Logger.logIndenting(2, "Couldn't compile", op + ":", e);
+				}
+			}
+			// whatever we can't represent could be any value
+			return dimensions ? DimTransfer.havoc(env, var) : Transfer.havoc(var);
+		}
+		if (op instanceof JIfStmt) {
+			// parse expressions on either side
+			ConditionExpr cond = (ConditionExpr) ((JIfStmt) op).getCondition();
+			if (!isTracked(cond.getOp1()) || !isTracked(cond.getOp2()))
+				return Transfer.IDENTITY;
+
+			// parse (in-)equality for easier logic later in toConstraint
+			boolean equality = cond instanceof JEqExpr || cond instanceof JNeExpr; // ==, !=
+			boolean strict = cond instanceof JGtExpr || cond instanceof JLtExpr; // >, <
+			boolean negated = cond instanceof JNeExpr || cond instanceof JLeExpr || cond instanceof JLtExpr; // !=, <=, <
+
+			if (dimensions) {
+				Transfer transfer = DimTransfer.guard(env, cond.getOp1(), cond.getOp2(), equality, strict, negated);
+				if (transfer != null)
+					return transfer;
+			}
+			Texpr1Node l = toExpr(cond.getOp1());
+			Texpr1Node r = toExpr(cond.getOp2());
 
-		if (expr != null) {
-			Logger.log(expr);
-			Texpr1Intern val = new Texpr1Intern(env, expr); // value to assign
-			// apply to state
-			fall.assign(man, var, val, null);
-			branch.assign(man, var, val, null);
-		} // we can ignore anything not parsed by toExpr
+			// constraints for un-/fulfillment
+			return Transfer.guard(toConstraints(l, r, equality, !strict, !negated), toConstraints(l, r, equality, strict, negated));
+		}
+		return Transfer.IDENTITY;
 	}
 
-	/// computes the output states of applying an if statement
-	static void applyIf(JIfStmt jIf, Abstract1 fall, Abstract1 branch) throws ApronException {
-		final boolean verbose = false;
-
-		// parse expressions on either side
-		ConditionExpr cond = (ConditionExpr) jIf.getCondition();
-		Texpr1Node l = toExpr(cond.getOp1());
-		Texpr1Node r = toExpr(cond.getOp2());
-		if (verbose) Logger.log(cond.getClass(), cond.getOp1().getClass(), cond.getOp2().getClass());
-
-		// parse (in-)equality for easier logic later in toConstraint
-		boolean equality = cond instanceof JEqExpr || cond instanceof JNeExpr; // ==, !=
-		boolean strict = cond instanceof JGtExpr || cond instanceof JLtExpr; // >, <
-		boolean negated = cond instanceof JNeExpr || cond instanceof JLeExpr || cond instanceof JLtExpr; // !=, <=, <
-		if (verbose) Logger.log("=", equality, "//", "</>", strict, "//", "!", negated);
-
-		// apply constraints for un-/fulfillment
-		applyConstraint(branch, l, r, equality, strict, negated);
-		applyConstraint(fall, l, r, equality, !strict, !negated);
+	// whether the value only consists of constants and variables in our environment, combined by operations we can represent
+	private boolean isTracked(Value value) {
+		if (value instanceof IntConstant)
+			return true;
+		if (value instanceof JimpleLocal)
+			return env.hasVar(((JimpleLocal) value).getName());
+		if (value instanceof JAddExpr || value instanceof JSubExpr || value instanceof JMulExpr)
+			return isTracked(((BinopExpr) value).getOp1()) && isTracked(((BinopExpr) value).getOp2());
+		return false;
 	}
-	
-	// wraps around toConstraint (applying it) with special handling for inequality
-	static void applyConstraint(Abstract1 state, Texpr1Node l, Texpr1Node r, boolean equality, boolean strict, boolean negated) throws ApronException {
+
+	// wraps around toConstraint with special handling for inequality, which is split into alternatives to join
+	private Tcons1[] toConstraints(Texpr1Node l, Texpr1Node r, boolean equality, boolean strict, boolean negated) {
 		if (equality && negated) {
 			// special handling for inequality, because polyhedra are imprecise for it
-			Abstract1 copy = new Abstract1(man, state);
-			applyConstraint(state, l, r, false, true, false);
-			applyConstraint(copy, l, r, false, true, true);
-			state.join(man, copy);
-		} else {
-			// handle everything else normally
-			state.meet(man, toConstraint(l, r, equality, strict, negated));
+			return new Tcons1[] { toConstraint(l, r, false, true, false), toConstraint(l, r, false, true, true) };
+		}
+		// handle everything else normally
+		return new Tcons1[] { toConstraint(l, r, equality, strict, negated) };
+	}
+
+	// all statements reachable from the heads of the graph
+	private Set<Unit> reachableUnits() {
+		Set<Unit> reachable = new HashSet<Unit>();
+		Deque<Unit> pending = new ArrayDeque<Unit>(g.getHeads());
+		while (!pending.isEmpty()) {
+			Unit op = pending.pop();
+			if (reachable.add(op))
+				pending.addAll(g.getSuccsOf(op));
 		}
+		return reachable;
 	}
 
 	// converts an (in-)equality of a given type to a Tcons1 linear constraint (e.g. l >= r -> l-r >= 0; l < r -> r-l > 0 -> r-l-1 >= 0)
-	static Tcons1 toConstraint(Texpr1Node l, Texpr1Node r, boolean equality, boolean strict, boolean negated) {
+	Tcons1 toConstraint(Texpr1Node l, Texpr1Node r, boolean equality, boolean strict, boolean negated) {
 		// if negated, constrain r-l, otherwise l-r
 		Texpr1BinNode sub = new Texpr1BinNode(Texpr1BinNode.OP_SUB, negated ? r : l, negated ? l : r);
 		int cons;
@@ -229,33 +436,52 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 			List<AWrapper> fallOut, List<AWrapper> branchOut) {
 		final boolean verbose = true;
 
-		Stmt s = (Stmt) op;
+		if (cancelled)
+			throw new CancellationException("analysis in " + domain + " was cancelled");
+		transfers++;
+		policy.visited(op);
 
 		// debug output
 		Logger.logIndenting(1, op);
 		//if (verbose && in.get() != null) Logger.logIndenting(2, "In:", in);
 
 		try {
-			Abstract1 fall = new Abstract1(man, in.get());
-			Abstract1 branch = new Abstract1(man, in.get());
-
-			// parse statement
-			try {
-				if (s instanceof DefinitionStmt) {
-					applyDef((DefinitionStmt) s, fall, branch);
-				} else if (s instanceof JIfStmt) {
-					applyIf((JIfStmt) s, fall, branch);
-				}
-			} catch (IllegalArgumentException e) {
-				// This mostly happens when variables aren't defined in our environment, which (hopefully) means we don't care about them.
-				if (verbose) Logger.logIndenting(2, "Statement ignored! Illegal argument given (don't worry unless this was an int):", e);
+			// states are never modified once set, so the outputs share the input until a transfer function changes them
+			Abstract1 input = in.get();
+			Transfer transfer = compiled.get(op);
+			Abstract1 fall = transfer.apply(man, input, false);
+			Abstract1 branch = transfer.kind == Transfer.Kind.GUARD ? transfer.apply(man, input, true) : fall;
+			if (fall != input)
+				copies++;
+			if (branch != input && branch != fall)
+				copies++;
+
+			// an unreachable statement's input is bottom already
+			String[] dead = deadAfter == null || transfer.kind == Transfer.Kind.UNREACHABLE ? null : deadAfter.get(op);
+			if (dead != null) {
+				fall = forget(fall, input, dead);
+				branch = branchOut.isEmpty() ? branch : forget(branch, input, dead);
+				Stats.add("liveness.forgotten", dead.length);
+			}
+
+			// the same input always yields the same outputs, so they keep their stamps from the last visit
+			long[] stamps = outStamps.get(op);
+			if (stamps == null || stamps[0] != in.getStamp()) {
+				stamps = new long[] { in.getStamp(), AWrapper.newStamp(), AWrapper.newStamp() };
+				outStamps.put(op, stamps);
 			}
 
+			// a passed-through input is already shared (and stamped)
+			if (fall != input)
+				fall = shared(fall);
+			if (branch != input)
+				branch = shared(branch);
+
 			// apply to wrappers
 			for (AWrapper out : fallOut)
-				out.set(fall);
+				out.set(fall, fall == input ? in.getStamp() : stamps[1]);
 			for (AWrapper out : branchOut)
-				out.set(branch);
+				out.set(branch, branch == input ? in.getStamp() : stamps[2]);
 
 			if (verbose) {
 				Logger.logIndenting(2, "Fall through: ", fallOut);
@@ -268,13 +494,20 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 		}
 	}
 
+	// forgets the given variables, copying the state first if it is still the (shared) input
+	private Abstract1 forget(Abstract1 state, Abstract1 input, String[] vars) throws ApronException {
+		if (state != input) {
+			state.forget(man, vars, false);
+			return state;
+		}
+		copies++;
+		return state.forgetCopy(man, vars, false);
+	}
+
 	@Override
 	protected void copy(AWrapper source, AWrapper dest) {
-		try {
-			dest.set(new Abstract1(man, source.get()));
-		} catch (ApronException e) {
-			e.printStackTrace();
-		}
+		// states are never modified once set, so they can be shared instead of copied
+		dest.set(source.get(), source.getStamp());
 	}
 
 	@Override
@@ -282,43 +515,38 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 		Abstract1 top = null;
 		try {
 			top = new Abstract1(man, env);
+			if (store != null) {
+				if (sharedTop == null)
+					sharedTop = shared(top);
+				top = sharedTop;
+			}
 		} catch (ApronException e) {
 		}
-		return new AWrapper(top);
-	}
-
-	private static class Counter {
-		int value;
-
-		Counter(int v) {
-			value = v;
-		}
+		return new AWrapper(top, man);
 	}
 
 	@Override
 	protected void merge(Unit succNode, AWrapper w1, AWrapper w2, AWrapper w3) {
-		Counter count = loopHeads.get(succNode);
+		joins++;
 
 		Abstract1 a1 = w1.get();
 		Abstract1 a2 = w2.get();
 		Abstract1 a3 = null;
 
 		try {
-			if (count != null) {
-				++count.value;
-				if (count.value < WIDENING_THRESHOLD) {
-					a3 = a1.joinCopy(man, a2);
-				} else {
-					//Logger.log("widening", a1, "with", a2);
-					if (a2.isBottom(man))
-						a3 = a2;
-					else
-						a3 = a1.widening(man, a2);
-				}
+			CountingLoop counting = countingLoops == null ? null : countingLoops.get(succNode);
+			if (counting != null) {
+				// the accelerated state is inductive, so whatever comes back around the loop is included already
+				a3 = counting.accelerate(man, env, a1.joinCopy(man, a2));
+				Stats.add("acceleration.applied", 1);
+			} else if (loopHeads.contains(succNode) && policy.widen(succNode)) {
+				//Logger.log("widening", a1, "with", a2);
+				// widening expects its first argument to be included in the second
+				a3 = widen(a1, a1.joinCopy(man, a2));
 			} else {
 				a3 = a1.joinCopy(man, a2);
 			}
-			w3.set(a3);
+			w3.set(shared(a3));
 		} catch (Exception e) {
 			System.out.println(e);
 		}
@@ -331,25 +559,161 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 		Abstract1 a2 = src2.get();
 		Abstract1 a3 = null;
 
+		joins++;
 		try {
-			a3 = a1.joinCopy(man, a2);
+			a3 = shared(a1.joinCopy(man, a2));
 		} catch (ApronException e) {
 			e.printStackTrace();
 		}
 		trg.set(a3);
 	}
 
+	@Override
+	protected void doAnalysis() {
+		if (wto == null && blockOrder == null) {
+			super.doAnalysis();
+			return;
+		}
+
+		for (Unit op : g) {
+			// inside basic blocks, nothing is kept
+			Block block = blockOf == null ? null : blockOf.get(op);
+			if (block == null || block.getHead() == op)
+				unitToBeforeFlow.put(op, newInitialFlow());
+			if (block != null && block.getTail() != op)
+				continue;
+			List<AWrapper> fallOut = new ArrayList<AWrapper>();
+			if (op.fallsThrough())
+				fallOut.add(newInitialFlow());
+			List<AWrapper> branchOut = new ArrayList<AWrapper>();
+			for (int i = 0; i < op.getUnitBoxes().size(); i++)
+				branchOut.add(newInitialFlow());
+			unitToAfterFallFlow.put(op, fallOut);
+			unitToAfterBranchFlow.put(op, branchOut);
+		}
+		try {
+			if (blockOrder != null)
+				iterate(blockOrder.elements);
+			else
+				iterate(wto.elements);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// the nodes of the order are statements or basic blocks
+	private <N> void iterate(List<WeakTopologicalOrder.Element<N>> elements) throws ApronException {
+		for (WeakTopologicalOrder.Element<N> element : elements) {
+			if (element.isComponent()) {
+				stabilize(element);
+			} else {
+				Unit entry = entryOf(element.head);
+				unitToBeforeFlow.put(entry, joinPredecessors(entry));
+				applyNode(element.head);
+			}
+		}
+	}
+
+	// iterates a component until the state at its head is stable, stabilizing nested components on every round
+	private <N> void stabilize(WeakTopologicalOrder.Element<N> component) throws ApronException {
+		Unit head = entryOf(component.head);
+		policy.entered(head);
+		for (int round = 0; ; round++) {
+			Abstract1 old = getFlowBefore(head).get();
+			Abstract1 in = joinPredecessors(head).get();
+			if (round > 0 && in.isIncluded(man, old))
+				break;
+			CountingLoop counting = countingLoops == null ? null : countingLoops.get(head);
+			if (counting != null) {
+				in = counting.accelerate(man, env, in);
+				Stats.add("acceleration.applied", 1);
+			} else if (round > 0 && policy.widen(head) && !old.isBottom(man)) {
+				in = widen(old, old.joinCopy(man, in));
+			}
+			unitToBeforeFlow.put(head, new AWrapper(shared(in), man));
+			applyNode(component.head);
+			iterate(component.body);
+		}
+	}
+
+	// the join of what flows into op along all its incoming edges
+	private AWrapper joinPredecessors(Unit op) {
+		AWrapper in = g.getHeads().contains(op) ? entryInitialFlow() : newInitialFlow();
+		Chain<Unit> units = g.getBody().getUnits();
+		for (Unit pred : g.getPredsOf(op)) {
+			if (pred.fallsThrough() && units.getSuccOf(pred) == op)
+				merge(in, unitToAfterFallFlow.get(pred).get(0), in);
+			List<UnitBox> targets = pred.getUnitBoxes();
+			for (int i = 0; i < targets.size(); i++)
+				if (targets.get(i).getUnit() == op)
+					merge(in, unitToAfterBranchFlow.get(pred).get(i), in);
+		}
+		return in;
+	}
+
+	private void apply(Unit op) {
+		flowThrough(unitToBeforeFlow.get(op), op, unitToAfterFallFlow.get(op), unitToAfterBranchFlow.get(op));
+	}
+
+	// the statement a node of the order starts with
+	private static Unit entryOf(Object node) {
+		return node instanceof Block ? ((Block) node).getHead() : (Unit) node;
+	}
+
+	private void applyNode(Object node) {
+		if (node instanceof Block)
+			applyBlock((Block) node);
+		else
+			apply((Unit) node);
+	}
+
+	// applies the statements of a block one after the other, only keeping what flows out of the last one
+	private void applyBlock(Block block) {
+		AWrapper in = unitToBeforeFlow.get(block.getHead());
+		for (Unit op = block.getHead(); op != block.getTail(); op = block.getSuccOf(op))
+			in = step(in, op);
+		apply(block.getTail(), in);
+	}
+
+	private void apply(Unit op, AWrapper in) {
+		flowThrough(in, op, unitToAfterFallFlow.get(op), unitToAfterBranchFlow.get(op));
+	}
+
+	// what flows out of a statement inside a block, which always just falls through
+	private AWrapper step(AWrapper in, Unit op) {
+		AWrapper out = new AWrapper(null, man);
+		flowThrough(in, op, Collections.singletonList(out), Collections.<AWrapper> emptyList());
+		return out;
+	}
+
+	// the state before a statement inside a block is recomputed from the start of the block whenever it is asked for,
+	// and isn't kept, so that asking for many statements doesn't bring back a state per statement
+	@Override
+	public AWrapper getFlowBefore(Unit op) {
+		AWrapper before = unitToBeforeFlow.get(op);
+		if (before == null && blockOf != null && blockOf.containsKey(op)) {
+			Block block = blockOf.get(op);
+			before = unitToBeforeFlow.get(block.getHead());
+			for (Unit u = block.getHead(); u != op; u = block.getSuccOf(u))
+				before = step(before, u);
+		}
+		return before;
+	}
+
 	@Override
 	protected AWrapper newInitialFlow() {
 		Abstract1 bot = null;
 
 		try {
 			bot = new Abstract1(man, env, true);
+			if (store != null) {
+				if (sharedBottom == null)
+					sharedBottom = shared(bot);
+				bot = sharedBottom;
+			}
 		} catch (ApronException e) {
 		}
-		AWrapper a = new AWrapper(bot);
-		a.man = man;
-		return a;
+		return new AWrapper(bot, man);
 
 	}
 
@@ -360,11 +724,33 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 	}
 
 
-	public static Manager man;
-	public static Environment env;
+	// per-instance, so that several methods can be analyzed concurrently
+	public Domain domain;
+	public Manager man;
+	public Environment env;
 	public UnitGraph g;
 	public String local_ints[]; // integer local variables of the method
 	public static String reals[] = { "x" };
 	public SootClass jclass;
 	private String class_ints[]; // integer class variables where the method is defined
+	private Set<String> tracked; // variables to restrict the environment to, or null for all
+	private Map<Unit, String[]> deadAfter; // variables to forget after each statement, or null to keep everything
+	private WeakTopologicalOrder<Unit> wto; // order to iterate in, or null to use Soot's worklist
+	private BlockGraph blocks; // basic blocks to iterate over instead of statements, or null
+	private WeakTopologicalOrder<Block> blockOrder; // order to iterate the blocks in
+	private Map<Unit, Block> blockOf; // block of each statement
+	private int transfers; // number of statements analyzed, counting repeated visits
+	private int joins; // number of joins and widenings
+	private int copies; // number of states copied before being changed by a statement
+	private int descendingRounds = 0; // rounds of re-applying all statements after the fixpoint is reached
+	private Lincons1[] thresholds; // bounds to keep when widening, or null to widen plainly
+	private int wideningDelay = WIDENING_THRESHOLD; // number of joins at a loop head before widening
+	private WideningPolicy policy; // when to widen, by default after wideningDelay joins
+	private Map<Unit, CountingLoop> countingLoops; // loops whose head states are computed in closed form, by head
+	private StateStore store; // where states are interned, or null to give every program point its own copy
+	private Abstract1 sharedTop, sharedBottom; // the interned initial states, created on first use
+	private HashMap<Unit, Transfer> compiled = new HashMap<Unit, Transfer>(); // transfer function of each statement
+	private boolean dimensions = false; // whether to compile statements to Abstract0 dimensions
+	private Map<Unit, IntConstant> folded; // constants to assign instead of the right-hand sides of definitions, or null
+	private HashMap<Unit, long[]> outStamps = new HashMap<Unit, long[]>(); // stamp of the last input, then of the outputs
 }
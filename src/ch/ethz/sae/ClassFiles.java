@@ -0,0 +1,194 @@
+package ch.ethz.sae;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.*;
+
+// finds the class files Soot would load a class from
+public class ClassFiles {
+
+	// returns the class file (or the jar containing it) a class would be loaded from, or null if it isn't on the class path
+	static File locate(String className, String classPath) {
+		String relative = className.replace('.', '/') + ".class";
+		for (String entry : classPath.split(File.pathSeparator)) {
+			if (entry.isEmpty())
+				continue;
+			File file = new File(entry);
+			if (file.isDirectory()) {
+				File classFile = new File(file, relative);
+				if (classFile.isFile())
+					return classFile;
+			} else if (file.isFile() && jarContains(file, relative)) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	// reads the bytecode of a class from the class path, or returns null if it isn't there
+	static byte[] read(String className, String classPath) {
+		File location = locate(className, classPath);
+		if (location == null)
+			return null;
+		try {
+			if (location.getName().endsWith(".class"))
+				return readFile(location);
+			ZipFile zip = new ZipFile(location);
+			try {
+				ZipEntry entry = zip.getEntry(className.replace('.', '/') + ".class");
+				return readFully(zip.getInputStream(entry), (int) entry.getSize());
+			} finally {
+				zip.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	static byte[] readFile(File file) throws IOException {
+		return readFully(new FileInputStream(file), (int) file.length());
+	}
+
+	private static byte[] readFully(InputStream in, int sizeHint) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(sizeHint, 0));
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static boolean jarContains(File jar, String entry) {
+		return entriesOf(jar).contains(entry);
+	}
+
+	private static class JarIndex {
+		final long lastModified;
+		final Set<String> entries;
+
+		JarIndex(long lastModified, Set<String> entries) {
+			this.lastModified = lastModified;
+			this.entries = entries;
+		}
+	}
+
+	// entry names of the jars on the class path, so that looking up a class doesn't open every jar again
+	private static final HashMap<File, JarIndex> jarIndexes = new HashMap<File, JarIndex>();
+
+	// the names of the entries in a jar, read once and again only when the jar changes
+	private static synchronized Set<String> entriesOf(File jar) {
+		long lastModified = jar.lastModified();
+		JarIndex index = jarIndexes.get(jar);
+		if (index != null && index.lastModified == lastModified)
+			return index.entries;
+		Set<String> entries = new HashSet<String>();
+		try {
+			ZipFile zip = new ZipFile(jar);
+			try {
+				Enumeration<? extends ZipEntry> all = zip.entries();
+				while (all.hasMoreElements())
+					entries.add(all.nextElement().getName());
+			} finally {
+				zip.close();
+			}
+		} catch (IOException e) {
+			// not a jar, which Soot will skip as well
+		}
+		jarIndexes.put(jar, new JarIndex(lastModified, entries));
+		return entries;
+	}
+
+	private static final byte[][] WELD_METHODS = { ascii("weldAt"), ascii("weldBetween") };
+
+	// whether the class refers to a method called weldAt or weldBetween, judging by its constant pool alone (like the
+	// Verifier, whatever class it belongs to); a class file we can't make sense of might, as far as we know
+	static boolean referencesWeld(byte[] bytecode) {
+		try {
+			ByteBuffer in = ByteBuffer.wrap(bytecode);
+			if (in.getInt() != 0xCAFEBABE)
+				return true;
+			in.getInt(); // minor and major version
+			int count = in.getShort() & 0xffff;
+			// where each name is, and which names methods are referred to by
+			int[] utf8Offset = new int[count], utf8Length = new int[count], nameOfNameAndType = new int[count];
+			List<Integer> methodNameAndTypes = new ArrayList<Integer>();
+			for (int i = 1; i < count; i++) {
+				byte tag = in.get();
+				switch (tag) {
+				case 1: // Utf8
+					utf8Length[i] = in.getShort() & 0xffff;
+					utf8Offset[i] = in.position();
+					in.position(in.position() + utf8Length[i]);
+					break;
+				case 10: // Methodref
+				case 11: // InterfaceMethodref
+					in.getShort();
+					methodNameAndTypes.add(in.getShort() & 0xffff);
+					break;
+				case 12: // NameAndType
+					nameOfNameAndType[i] = in.getShort() & 0xffff;
+					in.getShort();
+					break;
+				case 3: case 4: case 9: case 17: case 18: // Integer, Float, Fieldref, Dynamic, InvokeDynamic
+					in.getInt();
+					break;
+				case 5: case 6: // Long, Double, which take up two entries
+					in.getLong();
+					i++;
+					break;
+				case 7: case 8: case 16: case 19: case 20: // Class, String, MethodType, Module, Package
+					in.getShort();
+					break;
+				case 15: // MethodHandle
+					in.get();
+					in.getShort();
+					break;
+				default:
+					return true;
+				}
+			}
+			for (int nameAndType : methodNameAndTypes) {
+				int name = nameOfNameAndType[nameAndType];
+				for (byte[] weld : WELD_METHODS)
+					if (equals(bytecode, utf8Offset[name], utf8Length[name], weld))
+						return true;
+			}
+			return false;
+		} catch (RuntimeException e) {
+			// truncated, or indices out of range
+			return true;
+		}
+	}
+
+	private static boolean equals(byte[] bytes, int offset, int length, byte[] expected) {
+		if (length != expected.length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (bytes[offset + i] != expected[i])
+				return false;
+		return true;
+	}
+
+	private static byte[] ascii(String s) {
+		try {
+			return s.getBytes("US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// the name of a class given as a path to its class file (only classes in the default package, like the tests)
+	static String classNameOf(File classFile) {
+		String name = classFile.getName();
+		return name.substring(0, name.length() - ".class".length());
+	}
+
+	static boolean isClassFilePath(String request) {
+		return request.endsWith(".class");
+	}
+}
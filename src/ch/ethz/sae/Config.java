@@ -0,0 +1,219 @@
+package ch.ethz.sae;
+
+import java.io.*;
+import java.util.*;
+
+// command line options of the verifier
+public class Config {
+
+	public static final String USAGE = ""
+			+ "Usage: java -classpath soot-2.5.0.jar:./bin ch.ethz.sae.Verifier [options] <class to test>...\n"
+			+ "Options:\n"
+			+ "  -f, --classes <file>   read the classes to test from a file, one per line (- for stdin)\n"
+			+ "  -j, --jobs <n>         analyze up to n methods in parallel (default: 1)\n"
+			+ "      --server           keep running, answering one class name or class file path per line from stdin\n"
+			+ "      --port <n>         like --server, but answer connections to localhost:n instead of stdin\n"
+			+ "      --queue <n>        number of requests the server queues before pushing back (default: 16)\n"
+			+ "      --cache <dir>      reuse verdicts of classes whose bytecode was verified before with the same options\n"
+			+ "      --cache-size <n>   number of cached results kept before the least recently used are evicted (default: 10000)\n"
+			+ "      --domain <d>       box, octagon, polka (default) or pplpoly; tiered tries box, then octagon, then polka\n"
+			+ "                         on the methods the cheaper domains couldn't prove; portfolio runs box, octagon,\n"
+			+ "                         polka and pplpoly at the same time and takes the first that proves everything\n"
+			+ "      --packing          analyze groups of related variables separately, and everything else as intervals\n"
+			+ "      --prune            fold constants and cut off branches an interval pre-pass can decide\n"
+			+ "      --slice            only analyze the variables that can influence the weld calls\n"
+			+ "      --liveness         forget integer locals as soon as they are dead\n"
+			+ "      --engine <e>       worklist (default) or wto, which iterates along the weak topological order;\n"
+			+ "                         blocks does the same over basic blocks, keeping states only at their ends;\n"
+			+ "                         sparse propagates intervals along the SSA def-use chains of Shimple\n"
+			+ "      --widening <w>     standard (default) or thresholds, which widens to the robot bounds and loop constants\n"
+			+ "      --narrowing <n>    after the fixpoint, re-apply all statements n times to recover bounds lost by\n"
+			+ "                         widening, which then starts on the first revisit of a loop head\n"
+			+ "      --widening-delay <p> fixed (default) or adaptive, which picks the delay per loop from its shape\n"
+			+ "                         and restarts counting for inner loops on every outer iteration\n"
+			+ "      --accelerate       compute the invariants of simple counting loops in one step\n"
+			+ "      --intern           keep equal states only once, shared between program points\n"
+			+ "      --abstract0        apply statements to the underlying Abstract0 states, by dimension instead of name\n"
+			+ "      --stats            print timing and other statistics to stderr\n";
+
+	// bump whenever the analysis changes in a way that can change verdicts, so cached results aren't reused
+	static final String ANALYZER_VERSION = "4";
+
+	// classes to verify, in the order their verdicts are printed
+	List<String> classNames = new ArrayList<String>();
+	// number of worker threads analyzing methods
+	int jobs = 1;
+	// whether to run as a resident server instead of verifying classNames, and where to listen (0 means stdin)
+	boolean server = false;
+	int port = 0;
+	int queueSize = 16;
+	// directory of the persistent result cache, or null to not cache anything
+	File cacheDir = null;
+	int cacheSize = 10000;
+	// domains to try one after the other, until one proves a method safe
+	List<Domain> domains = Arrays.asList(Domain.POLKA);
+	// whether to run all domains concurrently instead of one after the other
+	boolean portfolio = false;
+	// whether to split the variables of each method into packs analyzed separately
+	boolean packing = false;
+	// whether to run the interval pre-pass folding constants and removing branches that can't be taken
+	boolean pruning = false;
+	// whether to restrict the analysis to the variables the weld calls depend on
+	boolean slicing = false;
+	// whether to forget variables after their last use
+	boolean liveness = false;
+	// how to iterate to a fixpoint
+	Engine engine = Engine.WORKLIST;
+	// whether to widen with thresholds instead of plainly
+	boolean thresholdWidening = false;
+	// rounds of the descending phase after the fixpoint, 0 to skip it
+	int narrowingRounds = 0;
+	// whether to choose the widening delay per loop instead of using the same everywhere
+	boolean adaptiveWidening = false;
+	// whether to compute the head states of counting loops in closed form
+	boolean acceleration = false;
+	// whether to share equal states instead of copying them; doesn't change any verdict
+	boolean internStates = false;
+	// whether to compile statements down to Abstract0 dimensions; doesn't change any verdict either
+	boolean abstract0 = false;
+	boolean stats = false;
+
+	// parses the command line, throwing an IllegalArgumentException describing the first problem found
+	static Config parse(String[] args) {
+		Config config = new Config();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-f") || arg.equals("--classes")) {
+				String file = valueOf(args, ++i, arg);
+				try {
+					config.classNames.addAll(readClassList(file));
+				} catch (IOException e) {
+					throw new IllegalArgumentException("could not read class list " + file + ": " + e.getMessage());
+				}
+			} else if (arg.equals("-j") || arg.equals("--jobs")) {
+				config.jobs = positiveIntOf(args, ++i, arg);
+			} else if (arg.equals("--server")) {
+				config.server = true;
+			} else if (arg.equals("--port")) {
+				config.server = true;
+				config.port = positiveIntOf(args, ++i, arg);
+			} else if (arg.equals("--queue")) {
+				config.queueSize = positiveIntOf(args, ++i, arg);
+			} else if (arg.equals("--cache")) {
+				config.cacheDir = new File(valueOf(args, ++i, arg));
+			} else if (arg.equals("--cache-size")) {
+				config.cacheSize = positiveIntOf(args, ++i, arg);
+			} else if (arg.equals("--domain")) {
+				String domain = valueOf(args, ++i, arg);
+				config.portfolio = domain.equals("portfolio");
+				config.domains = domainsOf(domain, arg);
+			} else if (arg.equals("--packing")) {
+				config.packing = true;
+			} else if (arg.equals("--prune")) {
+				config.pruning = true;
+			} else if (arg.equals("--slice")) {
+				config.slicing = true;
+			} else if (arg.equals("--liveness")) {
+				config.liveness = true;
+			} else if (arg.equals("--engine")) {
+				config.engine = engineOf(valueOf(args, ++i, arg), arg);
+			} else if (arg.equals("--widening")) {
+				String widening = valueOf(args, ++i, arg);
+				if (!widening.equals("standard") && !widening.equals("thresholds"))
+					throw new IllegalArgumentException(arg + " expects standard or thresholds, got " + widening);
+				config.thresholdWidening = widening.equals("thresholds");
+			} else if (arg.equals("--narrowing")) {
+				config.narrowingRounds = positiveIntOf(args, ++i, arg);
+			} else if (arg.equals("--widening-delay")) {
+				String policy = valueOf(args, ++i, arg);
+				if (!policy.equals("fixed") && !policy.equals("adaptive"))
+					throw new IllegalArgumentException(arg + " expects fixed or adaptive, got " + policy);
+				config.adaptiveWidening = policy.equals("adaptive");
+			} else if (arg.equals("--accelerate")) {
+				config.acceleration = true;
+			} else if (arg.equals("--intern")) {
+				config.internStates = true;
+			} else if (arg.equals("--abstract0")) {
+				config.abstract0 = true;
+			} else if (arg.equals("--stats")) {
+				config.stats = true;
+			} else if (arg.startsWith("-") && !arg.equals("-")) {
+				throw new IllegalArgumentException("unknown option " + arg);
+			} else {
+				config.classNames.add(arg);
+			}
+		}
+		if (config.server && !config.classNames.isEmpty())
+			throw new IllegalArgumentException("classes to test are read from requests in server mode");
+		if (!config.server && config.classNames.isEmpty())
+			throw new IllegalArgumentException("no classes to test");
+		if (config.engine == Engine.SPARSE && config.domains.size() > 1)
+			throw new IllegalArgumentException("--engine sparse only tracks intervals, so every domain would compute the same; pick one with --domain");
+		return config;
+	}
+
+	// everything besides the bytecode that the verdicts depend on
+	String analysisKey() {
+		return "version=" + ANALYZER_VERSION + " domains=" + domains + (portfolio ? " portfolio" : "") + (packing ? " packing" : "") + (pruning ? " prune" : "") + (slicing ? " slice" : "") + (liveness ? " liveness" : "") + " engine=" + engine + " widening=" + Analysis.WIDENING_THRESHOLD
+				+ (thresholdWidening ? " thresholds after " + Analysis.THRESHOLD_WIDENING_DELAY : "")
+				+ (narrowingRounds > 0 ? " narrowing=" + narrowingRounds + " after " + Analysis.NARROWING_WIDENING_DELAY : "")
+				+ (adaptiveWidening ? " adaptive counters after " + AdaptiveWideningPolicy.COUNTER_LOOP_DELAY : "")
+				+ (acceleration ? " accelerate" : "");
+	}
+
+	private static String valueOf(String[] args, int i, String option) {
+		if (i >= args.length)
+			throw new IllegalArgumentException(option + " expects an argument");
+		return args[i];
+	}
+
+	private static int positiveIntOf(String[] args, int i, String option) {
+		String value = valueOf(args, i, option);
+		try {
+			int n = Integer.parseInt(value);
+			if (n > 0)
+				return n;
+		} catch (NumberFormatException e) {
+		}
+		throw new IllegalArgumentException(option + " expects a positive number, got " + value);
+	}
+
+	private static List<Domain> domainsOf(String value, String option) {
+		if (value.equals("tiered"))
+			return Arrays.asList(Domain.BOX, Domain.OCTAGON, Domain.POLKA);
+		if (value.equals("portfolio"))
+			return Arrays.asList(Domain.values());
+		try {
+			return Arrays.asList(Domain.valueOf(value.toUpperCase()));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(option + " expects box, octagon, polka, pplpoly, tiered or portfolio, got " + value);
+		}
+	}
+
+	private static Engine engineOf(String value, String option) {
+		try {
+			return Engine.valueOf(value.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(option + " expects worklist, wto, blocks or sparse, got " + value);
+		}
+	}
+
+	// reads one class name per line, skipping empty lines and #comments
+	static List<String> readClassList(String file) throws IOException {
+		List<String> names = new ArrayList<String>();
+		InputStream in = file.equals("-") ? System.in : new FileInputStream(file);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+					names.add(line);
+			}
+		} finally {
+			if (in != System.in)
+				reader.close();
+		}
+		return names;
+	}
+}
@@ -0,0 +1,140 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import apron.*;
+import soot.*;
+import soot.jimple.*;
+import soot.jimple.toolkits.annotation.logic.Loop;
+import soot.toolkits.scalar.LiveLocals;
+
+// a loop that only steps a single counter by a constant until it passes a bound, like for (k = c0; k < c1; k++)
+public class CountingLoop {
+
+	final Unit head;
+	final String counter;
+	final int step;
+	// the loop continues while counter < bound (or <= if not strict) when stepping up, or > (>=) when stepping down
+	final Value bound;
+	final boolean strict;
+
+	private CountingLoop(Unit head, String counter, int step, Value bound, boolean strict) {
+		this.head = head;
+		this.counter = counter;
+		this.step = step;
+		this.bound = bound;
+		this.strict = strict;
+	}
+
+	// returns null unless the loop's head tests the counter against a constant or a variable the loop doesn't change,
+	// the counter is stepped in exactly one statement outside of nested loops, and no other variable live at the head changes
+	static CountingLoop recognize(Loop loop, Collection<Loop> loops, LiveLocals liveness) {
+		if (!(loop.getHead() instanceof IfStmt))
+			return null;
+		CountingLoop counting = recognize(loop, loops, liveness, false);
+		return counting != null ? counting : recognize(loop, loops, liveness, true);
+	}
+
+	// tries the left operand of the head's test as the counter, or the right one if flipped
+	private static CountingLoop recognize(Loop loop, Collection<Loop> loops, LiveLocals liveness, boolean flipped) {
+		IfStmt test = (IfStmt) loop.getHead();
+		ConditionExpr cond = (ConditionExpr) test.getCondition();
+		Value counter = flipped ? cond.getOp2() : cond.getOp1();
+		Value bound = flipped ? cond.getOp1() : cond.getOp2();
+		if (!(counter instanceof Local) || !(counter.getType() instanceof IntegerType))
+			return null;
+		if (!(bound instanceof IntConstant) && !(bound instanceof Local && bound.getType() instanceof IntegerType))
+			return null;
+
+		// normalize to "counter <op> bound" holding while the loop continues, "less" meaning < or <=
+		if (!(cond instanceof LtExpr || cond instanceof LeExpr || cond instanceof GtExpr || cond instanceof GeExpr))
+			return null;
+		boolean less = cond instanceof LtExpr || cond instanceof LeExpr;
+		boolean strict = cond instanceof LtExpr || cond instanceof GtExpr;
+		if (!loop.getLoopStatements().contains(test.getTarget())) {
+			// the test jumps out of the loop: !(k < b) is k >= b, !(k <= b) is k > b
+			less = !less;
+			strict = !strict;
+		}
+		if (flipped)
+			less = !less;
+
+		Set<Stmt> nested = new HashSet<Stmt>();
+		for (Loop other : loops)
+			if (other != loop && loop.getLoopStatements().contains(other.getHead()))
+				nested.addAll(other.getLoopStatements());
+
+		List<Local> liveAtHead = liveness.getLiveLocalsBefore(test);
+		Integer step = null;
+		for (Stmt s : loop.getLoopStatements()) {
+			if (!(s instanceof DefinitionStmt))
+				continue;
+			Value lhs = ((DefinitionStmt) s).getLeftOp();
+			if (lhs == bound)
+				return null;
+			if (lhs == counter) {
+				if (step != null || nested.contains(s))
+					return null;
+				step = stepOf((Local) counter, ((DefinitionStmt) s).getRightOp());
+				if (step == null)
+					return null;
+			} else if (lhs instanceof Local && lhs.getType() instanceof IntegerType && liveAtHead.contains(lhs)) {
+				return null;
+			}
+		}
+		if (step == null || step == 0 || (step > 0) != less)
+			return null;
+		return new CountingLoop(test, ((Local) counter).getName(), step, bound, strict);
+	}
+
+	// the constant the counter is stepped by in counter = counter + c or counter = counter - c
+	private static Integer stepOf(Local counter, Value rhs) {
+		if (rhs instanceof AddExpr) {
+			BinopExpr add = (BinopExpr) rhs;
+			if (add.getOp1() == counter && add.getOp2() instanceof IntConstant)
+				return ((IntConstant) add.getOp2()).value;
+			if (add.getOp2() == counter && add.getOp1() instanceof IntConstant)
+				return ((IntConstant) add.getOp1()).value;
+		} else if (rhs instanceof SubExpr) {
+			BinopExpr sub = (BinopExpr) rhs;
+			if (sub.getOp1() == counter && sub.getOp2() instanceof IntConstant)
+				return -((IntConstant) sub.getOp2()).value;
+		}
+		return null;
+	}
+
+	// the loop head invariant for the given entry state: the entry state, joined with all states after at least one step.
+	// After a step, the counter lies between its smallest (largest) value on entry plus one step and the last value
+	// passing the test plus one step, and nothing else the loop's continuation depends on has changed.
+	Abstract1 accelerate(Manager man, Environment env, Abstract1 entry) throws ApronException {
+		if (!env.hasVar(counter) || entry.isBottom(man))
+			return entry;
+		Interval start = entry.getBound(man, counter);
+		Texpr1Node k = new Texpr1VarNode(counter);
+		List<Tcons1> range = new ArrayList<Tcons1>();
+		Texpr1Node limit = Analysis.toExpr(bound);
+		if (!(bound instanceof Local) || env.hasVar(((Local) bound).getName())) {
+			// k <= bound - 1 + step, k <= bound + step, k >= bound + 1 + step or k >= bound + step
+			int offset = step + (strict ? (step > 0 ? -1 : 1) : 0);
+			Texpr1Node last = new Texpr1BinNode(Texpr1BinNode.OP_ADD, limit, constant(offset));
+			range.add(step > 0 ? atLeast(env, last, k) : atLeast(env, k, last));
+		}
+		Scalar first = step > 0 ? start.inf : start.sup;
+		if (first.isInfty() == 0) {
+			Texpr1Node next = new Texpr1BinNode(Texpr1BinNode.OP_ADD, new Texpr1CstNode(first), constant(step));
+			range.add(step > 0 ? atLeast(env, k, next) : atLeast(env, next, k));
+		}
+		Abstract1 stepped = entry.forgetCopy(man, counter, false);
+		stepped.meet(man, range.toArray(new Tcons1[range.size()]));
+		return entry.joinCopy(man, stepped);
+	}
+
+	private static Texpr1Node constant(int value) {
+		return new Texpr1CstNode(new MpqScalar(value));
+	}
+
+	// l >= r
+	private static Tcons1 atLeast(Environment env, Texpr1Node l, Texpr1Node r) {
+		return new Tcons1(env, Tcons1.SUPEQ, new Texpr1BinNode(Texpr1BinNode.OP_SUB, l, r));
+	}
+}
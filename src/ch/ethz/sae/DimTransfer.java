@@ -0,0 +1,182 @@
+package ch.ethz.sae;
+
+import soot.Value;
+import soot.jimple.BinopExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.internal.*;
+import apron.*;
+
+// a transfer function compiled down to the dimensions of the Abstract0 underlying the states, so applying it needs no name lookups
+public class DimTransfer extends Transfer {
+
+	// integer constants this large aren't exact as doubles anymore
+	private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+	private final int dim;
+	// the assigned value, as a linear expression if it is one and as a tree otherwise
+	private final Linexpr0 linear;
+	private final Texpr0Intern tree;
+	// the output along an edge is the join of the input met with each of these alternatives
+	private final Lincons0[] fall, branch;
+
+	private DimTransfer(Kind kind, int dim, Linexpr0 linear, Texpr0Intern tree, Lincons0[] fall, Lincons0[] branch) {
+		super(kind, null, null, null, null);
+		this.dim = dim;
+		this.linear = linear;
+		this.tree = tree;
+		this.fall = fall;
+		this.branch = branch;
+	}
+
+	// returns null if the value isn't made of immediates and operations we can represent
+	static DimTransfer assign(Environment env, String var, Value value) {
+		long[] form = linearize(env, value);
+		if (form != null)
+			return new DimTransfer(Kind.ASSIGN, env.dimOfVar(var), toLinexpr(form), null, null, null);
+		Texpr0Node node = toTree(env, value);
+		if (node == null)
+			return null;
+		return new DimTransfer(Kind.ASSIGN, env.dimOfVar(var), null, new Texpr0Intern(node), null, null);
+	}
+
+	static DimTransfer havoc(Environment env, String var) {
+		return new DimTransfer(Kind.HAVOC, env.dimOfVar(var), null, null, null, null);
+	}
+
+	// the guard of "if (l op r)", or null if either side isn't linear
+	static DimTransfer guard(Environment env, Value l, Value r, boolean equality, boolean strict, boolean negated) {
+		long[] left = linearize(env, l), right = linearize(env, r);
+		if (left == null || right == null)
+			return null;
+		return new DimTransfer(Kind.GUARD, -1, null, null,
+				toConstraints(left, right, equality, !strict, !negated), toConstraints(left, right, equality, strict, negated));
+	}
+
+	@Override
+	Abstract1 apply(Manager man, Abstract1 in, boolean branching) throws ApronException {
+		if (kind != Kind.ASSIGN && kind != Kind.HAVOC && kind != Kind.GUARD)
+			return in;
+		// states are never modified once set, so we work on a copy in place
+		Abstract1 out = new Abstract1(man, in);
+		Abstract0 abs = out.getAbstract0Ref();
+		switch (kind) {
+		case ASSIGN:
+			if (linear != null)
+				abs.assign(man, dim, linear, null);
+			else
+				abs.assign(man, dim, tree, null);
+			break;
+		case HAVOC:
+			abs.forget(man, dim, false);
+			break;
+		default:
+			Lincons0[] alternatives = branching ? branch : fall;
+			abs.meet(man, alternatives[0]);
+			for (int i = 1; i < alternatives.length; i++) {
+				Abstract1 other = new Abstract1(man, in);
+				other.getAbstract0Ref().meet(man, alternatives[i]);
+				out.join(man, other);
+			}
+		}
+		return out;
+	}
+
+	// the coefficients of the value by dimension, followed by its constant; null if it isn't linear
+	private static long[] linearize(Environment env, Value value) {
+		int size = env.getSize();
+		if (value instanceof IntConstant) {
+			long[] form = new long[size + 1];
+			form[size] = ((IntConstant) value).value;
+			return form;
+		}
+		if (value instanceof JimpleLocal) {
+			long[] form = new long[size + 1];
+			form[env.dimOfVar(((JimpleLocal) value).getName())] = 1;
+			return form;
+		}
+		if (!(value instanceof JAddExpr || value instanceof JSubExpr || value instanceof JMulExpr))
+			return null;
+		// Jimple only combines immediates, so none of this can overflow a long
+		long[] l = linearize(env, ((BinopExpr) value).getOp1());
+		long[] r = linearize(env, ((BinopExpr) value).getOp2());
+		if (l == null || r == null)
+			return null;
+		if (value instanceof JMulExpr) {
+			if (isConstant(l))
+				return scaled(r, l[size]);
+			if (isConstant(r))
+				return scaled(l, r[size]);
+			return null;
+		}
+		long sign = value instanceof JSubExpr ? -1 : 1;
+		for (int i = 0; i <= size; i++)
+			l[i] += sign * r[i];
+		return l;
+	}
+
+	private static boolean isConstant(long[] form) {
+		for (int i = 0; i < form.length - 1; i++)
+			if (form[i] != 0)
+				return false;
+		return true;
+	}
+
+	private static long[] scaled(long[] form, long factor) {
+		for (int i = 0; i < form.length; i++)
+			form[i] *= factor;
+		return form;
+	}
+
+	// the tree of a value that isn't linear, e.g. the product of two variables; null if we can't represent it
+	private static Texpr0Node toTree(Environment env, Value value) {
+		if (value instanceof IntConstant)
+			return new Texpr0CstNode(coeffOf(((IntConstant) value).value));
+		if (value instanceof JimpleLocal)
+			return new Texpr0DimNode(env.dimOfVar(((JimpleLocal) value).getName()));
+		if (!(value instanceof JAddExpr || value instanceof JSubExpr || value instanceof JMulExpr))
+			return null;
+		Texpr0Node l = toTree(env, ((BinopExpr) value).getOp1());
+		Texpr0Node r = toTree(env, ((BinopExpr) value).getOp2());
+		if (l == null || r == null)
+			return null;
+		return new Texpr0BinNode(Analysis.getOp((BinopExpr) value), l, r);
+	}
+
+	private static Linexpr0 toLinexpr(long[] form) {
+		int size = form.length - 1, terms = 0;
+		for (int i = 0; i < size; i++)
+			if (form[i] != 0)
+				terms++;
+		Linterm0[] linterms = new Linterm0[terms];
+		for (int i = 0, t = 0; i < size; i++)
+			if (form[i] != 0)
+				linterms[t++] = new Linterm0(i, coeffOf(form[i]));
+		return new Linexpr0(linterms, coeffOf(form[size]));
+	}
+
+	// doubles are exact for all the integers we deal with, and cheaper than rationals
+	private static Coeff coeffOf(long value) {
+		if (-MAX_EXACT_DOUBLE <= value && value <= MAX_EXACT_DOUBLE)
+			return new DoubleScalar(value);
+		return new MpqScalar(java.math.BigInteger.valueOf(value));
+	}
+
+	// the same constraints as Analysis.toConstraints, with inequality split into alternatives to join
+	private static Lincons0[] toConstraints(long[] l, long[] r, boolean equality, boolean strict, boolean negated) {
+		if (equality && negated)
+			return new Lincons0[] { toConstraint(l, r, false, true, false), toConstraint(l, r, false, true, true) };
+		return new Lincons0[] { toConstraint(l, r, equality, strict, negated) };
+	}
+
+	// l-r (or r-l if negated) compared to zero; since all variables are integers, a strict comparison is one off a non-strict one
+	private static Lincons0 toConstraint(long[] l, long[] r, boolean equality, boolean strict, boolean negated) {
+		long[] difference = new long[l.length];
+		for (int i = 0; i < l.length; i++)
+			difference[i] = negated ? r[i] - l[i] : l[i] - r[i];
+		if (equality)
+			return new Lincons0(negated ? Lincons0.DISEQ : Lincons0.EQ, toLinexpr(difference));
+		if (strict)
+			difference[difference.length - 1] -= 1;
+		return new Lincons0(Lincons0.SUPEQ, toLinexpr(difference));
+	}
+}
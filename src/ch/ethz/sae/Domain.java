@@ -0,0 +1,35 @@
+package ch.ethz.sae;
+
+import apron.*;
+
+// the Apron domains the analysis can run in, from cheapest to most precise
+public enum Domain {
+
+	BOX {
+		Manager newManager() {
+			return new Box();
+		}
+	},
+	OCTAGON {
+		Manager newManager() {
+			return new Octagon();
+		}
+	},
+	POLKA {
+		Manager newManager() {
+			return new Polka(true);
+		}
+	},
+	PPLPOLY {
+		Manager newManager() {
+			return new PplPoly(true);
+		}
+	};
+
+	// managers aren't thread-safe, so every analysis gets its own
+	abstract Manager newManager();
+
+	public String toString() {
+		return name().toLowerCase();
+	}
+}
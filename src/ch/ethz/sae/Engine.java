@@ -0,0 +1,18 @@
+package ch.ethz.sae;
+
+// the fixpoint iteration strategies the analysis can use
+public enum Engine {
+
+	// Soot's worklist, widening at the loop heads found by LoopNestTree
+	WORKLIST,
+	// along the weak topological order, stabilizing inner loops before outer ones and widening at component heads
+	WTO,
+	// like WTO, but over basic blocks, keeping states only where blocks start and end
+	BLOCKS,
+	// intervals of SSA locals propagated along def-use chains, widening only at loop-carried phi nodes
+	SPARSE;
+
+	public String toString() {
+		return name().toLowerCase();
+	}
+}
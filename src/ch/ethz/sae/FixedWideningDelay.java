@@ -0,0 +1,83 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.Body;
+import soot.Unit;
+import soot.jimple.toolkits.annotation.logic.Loop;
+
+// widens at a loop head once it has been joined at delay times in the current iteration of the enclosing loop
+public class FixedWideningDelay implements WideningPolicy {
+
+	static class LoopInfo {
+		final String name;
+		final int delay;
+		final List<Unit> innerHeads = new ArrayList<Unit>();
+		int joins;
+
+		LoopInfo(String name, int delay) {
+			this.name = name;
+			this.delay = delay;
+		}
+	}
+
+	private final HashMap<Unit, LoopInfo> loops = new HashMap<Unit, LoopInfo>();
+	private final Body body;
+	final int delay;
+
+	public FixedWideningDelay(Body body, Collection<Loop> loops, int delay) {
+		this.body = body;
+		this.delay = delay;
+		for (Loop loop : loops)
+			this.loops.put(loop.getHead(), newLoop(loop.getHead(), delayOf(loop)));
+		for (Loop loop : loops)
+			for (Loop other : loops)
+				if (other != loop && loop.getLoopStatements().contains(other.getHead()))
+					this.loops.get(loop.getHead()).innerHeads.add(other.getHead());
+	}
+
+	// the number of joins before widening at the head of this loop
+	int delayOf(Loop loop) {
+		return delay;
+	}
+
+	// loops are reported by method and the position of their head in it
+	private LoopInfo newLoop(Unit head, int delay) {
+		int index = 0;
+		for (Unit op : body.getUnits()) {
+			if (op == head)
+				break;
+			index++;
+		}
+		LoopInfo info = new LoopInfo("widening." + body.getMethod().getSignature() + "@" + index, delay);
+		Stats.max(info.name + ".delay", delay);
+		return info;
+	}
+
+	// a new iteration of a loop starts over the iterations of the loops nested in it
+	public void visited(Unit op) {
+		LoopInfo info = loops.get(op);
+		if (info != null)
+			for (Unit inner : info.innerHeads)
+				loops.get(inner).joins = 0;
+	}
+
+	public void entered(Unit head) {
+		LoopInfo info = loops.get(head);
+		if (info != null)
+			info.joins = 0;
+	}
+
+	public boolean widen(Unit head) {
+		LoopInfo info = loops.get(head);
+		if (info == null) {
+			// a cycle LoopNestTree doesn't know about
+			info = newLoop(head, delay);
+			loops.put(head, info);
+		}
+		info.joins++;
+		Stats.add(info.name + ".joins", 1);
+		Stats.max(info.name + ".maxJoins", info.joins);
+		return info.joins >= info.delay;
+	}
+}
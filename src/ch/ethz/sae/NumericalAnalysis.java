@@ -0,0 +1,16 @@
+package ch.ethz.sae;
+
+import soot.Unit;
+
+// numerical invariants of a method, as queried by the Verifier at the weld calls
+public interface NumericalAnalysis {
+
+	// computes the invariants; may be abandoned from another thread with cancel()
+	void run();
+
+	void cancel();
+
+	AWrapper getFlowBefore(Unit u);
+
+	Domain getDomain();
+}
@@ -0,0 +1,85 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import apron.*;
+import soot.*;
+import soot.jimple.*;
+import soot.jimple.toolkits.annotation.logic.Loop;
+import soot.toolkits.graph.UnitGraph;
+
+// analyzes only the packs of variables the weld calls depend on in the relational domain, and everything in Box
+public class PackedAnalysis implements NumericalAnalysis {
+
+	private final Domain domain;
+	private final Analysis intervals;
+	// relational analysis of each pack that contains arguments of weld calls, by variable
+	private final HashMap<String, Analysis> packs = new HashMap<String, Analysis>();
+	private final Set<Analysis> analyses = new LinkedHashSet<Analysis>();
+
+	public PackedAnalysis(UnitGraph g, SootClass jc, Domain domain, Collection<Loop> loops, Packing packing) {
+		this.domain = domain;
+		intervals = new Analysis(g, jc, Domain.BOX, loops);
+		analyses.add(intervals);
+		for (Unit op : g.getBody().getUnits()) {
+			if (!(op instanceof InvokeStmt) || !Packing.isWeldCall((InvokeStmt) op))
+				continue;
+			for (String var : Packing.argVars((InvokeStmt) op)) {
+				if (packs.containsKey(var))
+					continue;
+				Set<String> pack = packing.packOf(var);
+				Analysis analysis = new Analysis(g, jc, domain, loops, pack);
+				analyses.add(analysis);
+				for (String member : pack)
+					packs.put(member, analysis);
+				Stats.max("packing.maxPackSize", pack.size());
+			}
+		}
+		Stats.add("packing.packs", analyses.size() - 1);
+	}
+
+	// the underlying analyses, for setting them up the same way as an unpacked one
+	Collection<Analysis> parts() {
+		return analyses;
+	}
+
+	public void run() {
+		for (Analysis analysis : analyses)
+			analysis.run();
+	}
+
+	public void cancel() {
+		for (Analysis analysis : analyses)
+			analysis.cancel();
+	}
+
+	public Domain getDomain() {
+		return domain;
+	}
+
+	// the state of the pack the call's arguments are in, strengthened with the intervals of its variables
+	public AWrapper getFlowBefore(Unit u) {
+		AWrapper box = intervals.getFlowBefore(u);
+		Analysis pack = null;
+		if (u instanceof InvokeStmt)
+			for (String var : Packing.argVars((InvokeStmt) u))
+				pack = packs.get(var);
+		if (pack == null)
+			return box;
+		try {
+			if (box.get().isBottom(intervals.man))
+				return box;
+			Var[] vars = pack.env.getIntVars();
+			Interval[] bounds = new Interval[vars.length];
+			for (int i = 0; i < vars.length; i++)
+				bounds[i] = box.get().getBound(intervals.man, vars[i]);
+			Abstract1 reduced = new Abstract1(pack.man, pack.env, vars, bounds);
+			reduced.meet(pack.man, pack.getFlowBefore(u).get());
+			return new AWrapper(reduced, pack.man);
+		} catch (ApronException e) {
+			// the pack alone is still sound
+			Logger.log("Couldn't combine", u, "with its intervals:", e);
+			return pack.getFlowBefore(u);
+		}
+	}
+}
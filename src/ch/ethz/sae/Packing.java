@@ -0,0 +1,91 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.*;
+import soot.jimple.*;
+
+// groups the integer variables of a method that occur together in an assignment, a condition or a weld call into packs
+public class Packing {
+
+	// union-find over variable names
+	private final HashMap<String, String> parent = new HashMap<String, String>();
+
+	public Packing(Body body) {
+		for (Unit op : body.getUnits()) {
+			Stmt s = (Stmt) op;
+			List<String> related = new ArrayList<String>();
+			if (s instanceof DefinitionStmt) {
+				Value lhs = ((DefinitionStmt) s).getLeftOp();
+				if (!isIntLocal(lhs))
+					continue;
+				related.add(((Local) lhs).getName());
+				addIntLocals(((DefinitionStmt) s).getRightOp(), related);
+			} else if (s instanceof IfStmt) {
+				addIntLocals(((IfStmt) s).getCondition(), related);
+			} else if (s instanceof InvokeStmt && isWeldCall((InvokeStmt) s)) {
+				for (Value arg : s.getInvokeExpr().getArgs())
+					addIntLocals(arg, related);
+			}
+			for (String var : related)
+				union(related.get(0), var);
+		}
+	}
+
+	static boolean isWeldCall(InvokeStmt s) {
+		String name = s.getInvokeExpr().getMethodRef().getName();
+		return name.equals("weldAt") || name.equals("weldBetween");
+	}
+
+	private static boolean isIntLocal(Value value) {
+		return value instanceof Local && value.getType() instanceof IntegerType;
+	}
+
+	private static void addIntLocals(Value value, List<String> vars) {
+		if (isIntLocal(value))
+			vars.add(((Local) value).getName());
+		for (ValueBox use : value.getUseBoxes())
+			if (isIntLocal(use.getValue()))
+				vars.add(((Local) use.getValue()).getName());
+	}
+
+	// the representative of the pack var belongs to, or null if it isn't related to anything
+	String find(String var) {
+		String p = parent.get(var);
+		if (p == null)
+			return null;
+		if (p.equals(var))
+			return var;
+		String root = find(p);
+		parent.put(var, root);
+		return root;
+	}
+
+	private void union(String v1, String v2) {
+		if (!parent.containsKey(v1)) parent.put(v1, v1);
+		if (!parent.containsKey(v2)) parent.put(v2, v2);
+		String r1 = find(v1), r2 = find(v2);
+		if (!r1.equals(r2))
+			parent.put(r1, r2);
+	}
+
+	// all variables in the same pack as var
+	Set<String> packOf(String var) {
+		String root = find(var);
+		Set<String> pack = new TreeSet<String>();
+		if (root == null)
+			return pack;
+		for (String other : parent.keySet())
+			if (root.equals(find(other)))
+				pack.add(other);
+		return pack;
+	}
+
+	// the variables of the weld call's arguments, which all end up in the same pack
+	static List<String> argVars(InvokeStmt s) {
+		List<String> vars = new ArrayList<String>();
+		for (Value arg : s.getInvokeExpr().getArgs())
+			addIntLocals(arg, vars);
+		return vars;
+	}
+}
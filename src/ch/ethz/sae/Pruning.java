@@ -0,0 +1,192 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.*;
+import soot.jimple.*;
+import soot.toolkits.graph.*;
+import soot.util.Chain;
+
+// a cheap interval analysis before the relational one, to fold constants and cut off the branches it can decide
+public class Pruning {
+
+	// visits of a join point before widening; precision lost here only means pruning less
+	static final int WIDENING_DELAY = 2;
+
+	// the edges out of each branch that can never be taken
+	private final Map<Unit, Set<Unit>> deadEdges = new HashMap<Unit, Set<Unit>>();
+	// definitions of integer locals that always assign the same constant
+	final Map<Unit, IntConstant> folded = new HashMap<Unit, IntConstant>();
+	// states before each reachable statement, with locals we know nothing about left out
+	private final Map<Unit, Map<Local, Range>> before = new HashMap<Unit, Map<Local, Range>>();
+
+	public Pruning(UnitGraph graph) {
+		Chain<Unit> units = graph.getBody().getUnits();
+		Map<Unit, Integer> visits = new HashMap<Unit, Integer>();
+		Deque<Unit> worklist = new ArrayDeque<Unit>();
+		Set<Unit> pending = new HashSet<Unit>();
+		for (Unit head : graph.getHeads()) {
+			before.put(head, new HashMap<Local, Range>());
+			worklist.add(head);
+			pending.add(head);
+		}
+		while (!worklist.isEmpty()) {
+			Unit op = worklist.poll();
+			pending.remove(op);
+			Map<Local, Range> in = before.get(op);
+			for (Unit succ : graph.getSuccsOf(op)) {
+				Map<Local, Range> out = flowAlong(op, succ, in, units);
+				if (out == null)
+					continue;
+				Map<Local, Range> old = before.get(succ);
+				Map<Local, Range> joined = old == null ? out : join(old, out);
+				Integer count = visits.get(succ);
+				visits.put(succ, count == null ? 1 : count + 1);
+				boolean joinPoint = graph.getPredsOf(succ).size() + (graph.getHeads().contains(succ) ? 1 : 0) > 1;
+				if (old != null && joinPoint && count != null && count >= WIDENING_DELAY)
+					joined = widen(old, joined);
+				if (!joined.equals(old)) {
+					before.put(succ, joined);
+					if (pending.add(succ))
+						worklist.add(succ);
+				}
+			}
+		}
+
+		for (Unit op : units) {
+			Map<Local, Range> in = before.get(op);
+			if (in == null)
+				continue;
+			if (op instanceof IfStmt) {
+				for (Unit succ : graph.getSuccsOf(op)) {
+					if (flowAlong(op, succ, in, units) != null)
+						continue;
+					if (!deadEdges.containsKey(op))
+						deadEdges.put(op, new HashSet<Unit>());
+					deadEdges.get(op).add(succ);
+				}
+			} else if (op instanceof DefinitionStmt && isIntLocal(((DefinitionStmt) op).getLeftOp())) {
+				Value rhs = ((DefinitionStmt) op).getRightOp();
+				Range value = evaluate(rhs, in);
+				if (!(rhs instanceof IntConstant) && value.isConstant() && Integer.MIN_VALUE <= value.lo && value.lo <= Integer.MAX_VALUE)
+					folded.put(op, IntConstant.v((int) value.lo));
+			}
+		}
+		Stats.add("pruning.decidedBranches", deadEdges.size());
+		Stats.add("pruning.unreachable", units.size() - before.size());
+		Stats.add("pruning.folded", folded.size());
+	}
+
+	// whether the statement can be reached at all, given the branches that can't be taken
+	boolean isReachable(Unit op) {
+		return before.containsKey(op);
+	}
+
+	// the state along the edge from op to succ, or null if it can't be taken
+	private Map<Local, Range> flowAlong(Unit op, Unit succ, Map<Local, Range> in, Chain<Unit> units) {
+		if (op instanceof IfStmt) {
+			IfStmt branch = (IfStmt) op;
+			ConditionExpr cond = (ConditionExpr) branch.getCondition();
+			boolean taken = branch.getTarget() == succ, fallen = units.getSuccOf(branch) == succ;
+			Map<Local, Range> out = taken ? refine(in, cond, true) : null;
+			if (fallen) {
+				Map<Local, Range> fall = refine(in, cond, false);
+				out = out == null ? fall : fall == null ? out : join(out, fall);
+			}
+			return out;
+		}
+		if (op instanceof DefinitionStmt && isIntLocal(((DefinitionStmt) op).getLeftOp())) {
+			Map<Local, Range> out = new HashMap<Local, Range>(in);
+			Range value = evaluate(((DefinitionStmt) op).getRightOp(), in);
+			if (value.equals(Range.TOP))
+				out.remove(((DefinitionStmt) op).getLeftOp());
+			else
+				out.put((Local) ((DefinitionStmt) op).getLeftOp(), value);
+			return out;
+		}
+		return in;
+	}
+
+	// the state where the condition holds (or doesn't), or null if that's impossible
+	private static Map<Local, Range> refine(Map<Local, Range> in, ConditionExpr cond, boolean holds) {
+		Value op1 = cond.getOp1(), op2 = cond.getOp2();
+		if (!isInt(op1) || !isInt(op2))
+			return in;
+		Range r1 = valueOf(op1, in), r2 = valueOf(op2, in);
+		Range refined1 = r1.restrict(cond, holds, false, r2), refined2 = r2.restrict(cond, holds, true, r1);
+		if (refined1.isBottom() || refined2.isBottom())
+			return null;
+		Map<Local, Range> out = new HashMap<Local, Range>(in);
+		if (op1 instanceof Local)
+			out.put((Local) op1, refined1);
+		if (op2 instanceof Local)
+			out.put((Local) op2, refined2);
+		return out;
+	}
+
+	private static Range evaluate(Value value, Map<Local, Range> in) {
+		if (value instanceof AddExpr)
+			return evaluate(((BinopExpr) value).getOp1(), in).add(evaluate(((BinopExpr) value).getOp2(), in));
+		if (value instanceof SubExpr)
+			return evaluate(((BinopExpr) value).getOp1(), in).subtract(evaluate(((BinopExpr) value).getOp2(), in));
+		if (value instanceof MulExpr)
+			return evaluate(((BinopExpr) value).getOp1(), in).multiply(evaluate(((BinopExpr) value).getOp2(), in));
+		return valueOf(value, in);
+	}
+
+	private static Range valueOf(Value value, Map<Local, Range> in) {
+		if (value instanceof IntConstant)
+			return Range.of(((IntConstant) value).value);
+		Range range = isIntLocal(value) ? in.get(value) : null;
+		return range == null ? Range.TOP : range;
+	}
+
+	// locals missing on either side could be anything
+	private static Map<Local, Range> join(Map<Local, Range> s1, Map<Local, Range> s2) {
+		Map<Local, Range> joined = new HashMap<Local, Range>();
+		for (Map.Entry<Local, Range> entry : s1.entrySet()) {
+			Range other = s2.get(entry.getKey());
+			if (other != null)
+				joined.put(entry.getKey(), entry.getValue().join(other));
+		}
+		return joined;
+	}
+
+	private static Map<Local, Range> widen(Map<Local, Range> old, Map<Local, Range> now) {
+		Map<Local, Range> widened = new HashMap<Local, Range>();
+		for (Map.Entry<Local, Range> entry : now.entrySet()) {
+			Range previous = old.get(entry.getKey());
+			if (previous != null && !previous.widen(entry.getValue()).equals(Range.TOP))
+				widened.put(entry.getKey(), previous.widen(entry.getValue()));
+		}
+		return widened;
+	}
+
+	private static boolean isInt(Value value) {
+		return value instanceof IntConstant || isIntLocal(value);
+	}
+
+	private static boolean isIntLocal(Value value) {
+		return value instanceof Local && value.getType() instanceof IntegerType;
+	}
+
+	// Soot's graph without the edges that can't be taken; statements only reachable through them lose their predecessors,
+	// but don't become heads, so the analysis never gets to them
+	static class PrunedGraph extends BriefUnitGraph {
+
+		PrunedGraph(Body body, Pruning pruning) {
+			super(body);
+			for (Map.Entry<Unit, Set<Unit>> dead : pruning.deadEdges.entrySet()) {
+				Unit from = dead.getKey();
+				List<Unit> succs = new ArrayList<Unit>(unitToSuccs.get(from));
+				succs.removeAll(dead.getValue());
+				unitToSuccs.put(from, Collections.unmodifiableList(succs));
+				for (Unit to : dead.getValue()) {
+					List<Unit> preds = new ArrayList<Unit>(unitToPreds.get(to));
+					preds.remove(from);
+					unitToPreds.put(to, Collections.unmodifiableList(preds));
+				}
+			}
+		}
+	}
+}
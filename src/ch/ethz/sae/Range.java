@@ -0,0 +1,131 @@
+package ch.ethz.sae;
+
+import soot.jimple.*;
+
+// an interval of integers for the sparse analysis; bounds beyond what doubles represent exactly count as infinite
+public class Range {
+
+	private static final double MAX_EXACT = 1L << 53;
+
+	static final Range TOP = new Range(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	static final Range BOTTOM = new Range(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+	final double lo, hi;
+
+	private Range(double lo, double hi) {
+		this.lo = lo;
+		this.hi = hi;
+	}
+
+	static Range of(double lo, double hi) {
+		if (lo > hi)
+			return BOTTOM;
+		// rounding might have made them too tight, so they go all the way
+		return new Range(lo < -MAX_EXACT ? Double.NEGATIVE_INFINITY : lo, hi > MAX_EXACT ? Double.POSITIVE_INFINITY : hi);
+	}
+
+	static Range of(int value) {
+		return new Range(value, value);
+	}
+
+	boolean isBottom() {
+		return lo > hi;
+	}
+
+	boolean isConstant() {
+		return lo == hi;
+	}
+
+	Range join(Range other) {
+		if (isBottom())
+			return other;
+		if (other.isBottom())
+			return this;
+		return of(Math.min(lo, other.lo), Math.max(hi, other.hi));
+	}
+
+	Range meet(Range other) {
+		return of(Math.max(lo, other.lo), Math.min(hi, other.hi));
+	}
+
+	// expects the other range to include this one
+	Range widen(Range other) {
+		if (isBottom())
+			return other;
+		return of(other.lo < lo ? Double.NEGATIVE_INFINITY : lo, other.hi > hi ? Double.POSITIVE_INFINITY : hi);
+	}
+
+	Range add(Range other) {
+		if (isBottom() || other.isBottom())
+			return BOTTOM;
+		return of(lo + other.lo, hi + other.hi);
+	}
+
+	Range subtract(Range other) {
+		if (isBottom() || other.isBottom())
+			return BOTTOM;
+		return of(lo - other.hi, hi - other.lo);
+	}
+
+	Range multiply(Range other) {
+		if (isBottom() || other.isBottom())
+			return BOTTOM;
+		double[] products = { times(lo, other.lo), times(lo, other.hi), times(hi, other.lo), times(hi, other.hi) };
+		double min = products[0], max = products[0];
+		for (double product : products) {
+			min = Math.min(min, product);
+			max = Math.max(max, product);
+		}
+		return of(min, max);
+	}
+
+	// the part of this range where the condition (or its negation) holds, comparing this range's value to the bound,
+	// with this range on the right-hand side if swapped
+	Range restrict(ConditionExpr cond, boolean holds, boolean swapped, Range bound) {
+		if (bound.isBottom())
+			return BOTTOM;
+
+		// this < bound, possibly negated or with the sides swapped
+		boolean less = cond instanceof LtExpr || cond instanceof LeExpr;
+		boolean strict = cond instanceof LtExpr || cond instanceof GtExpr;
+		boolean equality = cond instanceof EqExpr;
+		if (cond instanceof EqExpr || cond instanceof NeExpr) {
+			if (equality == holds)
+				return meet(bound);
+			// only excludes a value at the edge of the range
+			if (!bound.isConstant())
+				return this;
+			return of(lo == bound.lo ? lo + 1 : lo, hi == bound.lo ? hi - 1 : hi);
+		}
+		if (!holds) {
+			// !(l < r) is l >= r
+			less = !less;
+			strict = !strict;
+		}
+		if (swapped)
+			less = !less;
+		if (less)
+			return meet(of(Double.NEGATIVE_INFINITY, strict ? bound.hi - 1 : bound.hi));
+		return meet(of(strict ? bound.lo + 1 : bound.lo, Double.POSITIVE_INFINITY));
+	}
+
+	// zero times anything is zero, even an infinite bound
+	private static double times(double a, double b) {
+		return a == 0 || b == 0 ? 0 : a * b;
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof Range))
+			return false;
+		Range other = (Range) o;
+		return isBottom() ? other.isBottom() : lo == other.lo && hi == other.hi;
+	}
+
+	public int hashCode() {
+		return isBottom() ? 0 : Double.valueOf(lo).hashCode() * 31 + Double.valueOf(hi).hashCode();
+	}
+
+	public String toString() {
+		return isBottom() ? "<Bottom>" : "[" + lo + ", " + hi + "]";
+	}
+}
@@ -0,0 +1,172 @@
+package ch.ethz.sae;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.security.*;
+import java.util.*;
+
+// on-disk cache of verification results, keyed by content hashes; may be shared by several verifier processes
+public class ResultCache {
+
+	private static final String SUFFIX = ".result";
+	// temporary files this old belong to a process that died while storing
+	private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+	private final File dir;
+	private final int maxEntries;
+	// entries as of the last listing plus those stored since, or -1 before the first listing; other processes' stores aren't counted
+	private int knownEntries = -1;
+
+	ResultCache(File dir, int maxEntries) {
+		this.dir = dir;
+		this.maxEntries = maxEntries;
+		dir.mkdirs();
+	}
+
+	// returns the stored lines, or null on a miss
+	List<String> lookup(String key) {
+		File entry = new File(dir, key + SUFFIX);
+		List<String> lines = new ArrayList<String>();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(entry), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null)
+					lines.add(line);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			// missing, or evicted by another process while we were reading
+			return null;
+		}
+		// entries are evicted least recently used first
+		entry.setLastModified(System.currentTimeMillis());
+		return lines;
+	}
+
+	// stores the lines atomically: readers either see the whole entry or none at all
+	void store(String key, List<String> lines) {
+		try {
+			File temp = File.createTempFile(key, ".tmp", dir);
+			Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+			try {
+				for (String line : lines)
+					writer.write(line + "\n");
+			} finally {
+				writer.close();
+			}
+			File entry = new File(dir, key + SUFFIX);
+			if (!temp.renameTo(entry)) {
+				// someone else stored the same result first
+				temp.delete();
+				return;
+			}
+		} catch (IOException e) {
+			Logger.log("Could not store", key, "in the cache:", e);
+			return;
+		}
+		if (countStored())
+			evictIfNeeded();
+	}
+
+	// true if the directory has to be listed again, because it may hold too many entries by now
+	private synchronized boolean countStored() {
+		if (knownEntries >= 0 && ++knownEntries <= maxEntries)
+			return false;
+		knownEntries = maxEntries + 1;
+		return true;
+	}
+
+	private synchronized void listed(int entries) {
+		knownEntries = entries;
+	}
+
+	// deletes the least recently used entries once there are too many, in at most one process at a time
+	private void evictIfNeeded() {
+		File[] entries = listEntries();
+		if (entries == null)
+			return;
+		listed(entries.length);
+		if (entries.length <= maxEntries)
+			return;
+		try {
+			RandomAccessFile lockFile = new RandomAccessFile(new File(dir, ".lock"), "rw");
+			try {
+				FileLock lock = lockFile.getChannel().tryLock();
+				if (lock == null)
+					return; // another process is already evicting
+				try {
+					evict();
+				} finally {
+					lock.release();
+				}
+			} finally {
+				lockFile.close();
+			}
+		} catch (IOException e) {
+			Logger.log("Could not evict cache entries:", e);
+		} catch (OverlappingFileLockException e) {
+			// another thread of this process is already evicting
+		}
+	}
+
+	private void evict() {
+		File[] entries = listEntries();
+		if (entries == null || entries.length <= maxEntries)
+			return;
+		final HashMap<File, Long> lastUse = new HashMap<File, Long>();
+		for (File entry : entries)
+			lastUse.put(entry, entry.lastModified());
+		Arrays.sort(entries, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return lastUse.get(f1).compareTo(lastUse.get(f2));
+			}
+		});
+		// leave some room so we don't have to evict again on the next store
+		int toDelete = entries.length - maxEntries * 9 / 10;
+		for (int i = 0; i < toDelete; i++)
+			entries[i].delete();
+		listed(entries.length - toDelete);
+
+		File[] temps = dir.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".tmp");
+			}
+		});
+		long now = System.currentTimeMillis();
+		if (temps != null)
+			for (File temp : temps)
+				if (now - temp.lastModified() > STALE_TEMP_MILLIS)
+					temp.delete();
+	}
+
+	private File[] listEntries() {
+		return dir.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(SUFFIX);
+			}
+		});
+	}
+
+	// hex-encoded SHA-256 of the given parts
+	static String hash(byte[]... parts) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (byte[] part : parts) {
+				// length-prefixed, so that different splits of the same bytes hash differently
+				digest.update(Integer.toString(part.length).getBytes("UTF-8"));
+				digest.update((byte) ':');
+				digest.update(part);
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest())
+				hex.append(String.format("%02x", b & 0xff));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.*;
+import soot.jimple.*;
+import soot.toolkits.graph.*;
+
+// the integer variables that can influence the arguments of the weld calls of a method, or the conditions under which
+// they are reached; everything else can be left out of the analysis
+public class Slice {
+
+	private final Set<String> variables = new TreeSet<String>();
+
+	public Slice(UnitGraph graph) {
+		Map<Unit, List<IfStmt>> controllers = controlDependences(graph);
+		Set<Unit> relevant = new HashSet<Unit>();
+		for (Unit op : graph)
+			if (op instanceof InvokeStmt && Packing.isWeldCall((InvokeStmt) op))
+				relevant.add(op);
+
+		// variables occurring together in a statement constrain each other in relational domains, so we close over
+		// them in both directions, not just along data dependences
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Unit op : graph) {
+				List<String> vars = intLocalsOf(op);
+				if (!relevant.contains(op) && Collections.disjoint(vars, variables))
+					continue;
+				changed |= relevant.add(op);
+				changed |= variables.addAll(vars);
+				for (IfStmt branch : controllers.get(op)) {
+					changed |= relevant.add(branch);
+					changed |= variables.addAll(intLocalsOf(branch));
+				}
+			}
+		}
+		Stats.add("slice.statements", relevant.size());
+		Stats.add("slice.units", graph.size());
+		Stats.add("slice.variables", variables.size());
+	}
+
+	// the variables the analysis keeps
+	Set<String> variables() {
+		return variables;
+	}
+
+	// the integer locals the analysis relates to each other in a statement, like Packing
+	private static List<String> intLocalsOf(Unit op) {
+		List<String> vars = new ArrayList<String>();
+		if (op instanceof DefinitionStmt) {
+			Value lhs = ((DefinitionStmt) op).getLeftOp();
+			if (lhs instanceof Local && lhs.getType() instanceof IntegerType) {
+				vars.add(((Local) lhs).getName());
+				addIntLocals(((DefinitionStmt) op).getRightOp(), vars);
+			}
+		} else if (op instanceof IfStmt) {
+			addIntLocals(((IfStmt) op).getCondition(), vars);
+		} else if (op instanceof InvokeStmt && Packing.isWeldCall((InvokeStmt) op)) {
+			vars.addAll(Packing.argVars((InvokeStmt) op));
+		}
+		return vars;
+	}
+
+	private static void addIntLocals(Value value, List<String> vars) {
+		if (value instanceof Local && value.getType() instanceof IntegerType)
+			vars.add(((Local) value).getName());
+		for (ValueBox use : value.getUseBoxes())
+			if (use.getValue() instanceof Local && use.getValue().getType() instanceof IntegerType)
+				vars.add(((Local) use.getValue()).getName());
+	}
+
+	// the branches each statement is control dependent on: those with a successor the statement post-dominates, while
+	// not post-dominating the branch itself
+	private static Map<Unit, List<IfStmt>> controlDependences(UnitGraph graph) {
+		MHGPostDominatorsFinder<Unit> postDominators = new MHGPostDominatorsFinder<Unit>(graph);
+		Map<Unit, List<IfStmt>> controllers = new HashMap<Unit, List<IfStmt>>();
+		for (Unit op : graph)
+			controllers.put(op, new ArrayList<IfStmt>());
+		for (Unit op : graph) {
+			if (!(op instanceof IfStmt))
+				continue;
+			Unit join = postDominators.getImmediateDominator(op);
+			for (Unit succ : graph.getSuccsOf(op))
+				for (Unit controlled = succ; controlled != null && controlled != join; controlled = postDominators.getImmediateDominator(controlled))
+					if (!controllers.get(controlled).contains(op))
+						controllers.get(controlled).add((IfStmt) op);
+		}
+		return controllers;
+	}
+}
@@ -0,0 +1,177 @@
+package ch.ethz.sae;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+import apron.*;
+import soot.*;
+import soot.jimple.*;
+import soot.shimple.*;
+import soot.toolkits.scalar.ValueUnitPair;
+
+// an interval for every SSA local, propagated along def-use chains instead of pushing whole states through every statement;
+// the states at the queried calls are built from the intervals of their arguments, so it's only ever as precise as box
+public class SparseAnalysis implements NumericalAnalysis {
+
+	// rounds of re-evaluating all definitions after the fixpoint, to recover bounds lost by widening
+	static final int DESCENDING_ROUNDS = 2;
+
+	private final SsaForm ssa;
+	private final Domain domain;
+	private final Manager man;
+	private final HashMap<Local, Range> values = new HashMap<Local, Range>();
+	private final HashMap<Unit, Integer> updates = new HashMap<Unit, Integer>(); // changes of each loop-carried phi so far
+	private volatile boolean cancelled = false;
+	private int evaluations; // number of definitions evaluated, counting repeated visits
+
+	public SparseAnalysis(SsaForm ssa, Domain domain) {
+		this.ssa = ssa;
+		this.domain = domain;
+		this.man = domain.newManager();
+	}
+
+	public void run() {
+		Deque<DefinitionStmt> worklist = new ArrayDeque<DefinitionStmt>(ssa.definitions);
+		Set<DefinitionStmt> pending = new HashSet<DefinitionStmt>(ssa.definitions);
+		while (!worklist.isEmpty()) {
+			DefinitionStmt def = worklist.poll();
+			pending.remove(def);
+			Local local = (Local) def.getLeftOp();
+			Range old = valueOf(local);
+			Range now = evaluate(def);
+			if (ssa.loopCarried.contains(def)) {
+				Integer count = updates.get(def);
+				updates.put(def, count == null ? 1 : count + 1);
+				if (count != null && count >= Analysis.WIDENING_THRESHOLD)
+					now = old.widen(old.join(now));
+			}
+			if (now.equals(old))
+				continue;
+			values.put(local, now);
+			List<DefinitionStmt> users = ssa.dependents.get(local);
+			if (users != null)
+				for (DefinitionStmt user : users)
+					if (pending.add(user))
+						worklist.add(user);
+		}
+		// starting from a fixpoint, every round stays sound
+		for (int round = 0; round < DESCENDING_ROUNDS; round++)
+			for (DefinitionStmt def : ssa.definitions)
+				values.put((Local) def.getLeftOp(), evaluate(def));
+		Stats.add("sparse.evaluations", evaluations);
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public Domain getDomain() {
+		return domain;
+	}
+
+	// the box of the call's arguments (by their names in the original body), or bottom if the call can't be reached
+	public AWrapper getFlowBefore(Unit op) {
+		InvokeStmt call = ssa.calls.get(op);
+		List<Value> args = ((InvokeStmt) op).getInvokeExpr().getArgs();
+		List<String> names = new ArrayList<String>();
+		List<Interval> bounds = new ArrayList<Interval>();
+		boolean reachable = call != null;
+		if (reachable) {
+			List<SsaForm.Guard> guards = ssa.guards.get(call);
+			reachable = isFeasible(guards);
+			for (int i = 0; i < args.size() && reachable; i++) {
+				if (!(args.get(i) instanceof Local) || names.contains(args.get(i).toString()))
+					continue;
+				Range range = valueAt(call.getInvokeExpr().getArg(i), guards);
+				reachable = !range.isBottom();
+				names.add(args.get(i).toString());
+				bounds.add(new Interval(new DoubleScalar(range.lo), new DoubleScalar(range.hi)));
+			}
+		}
+		try {
+			Environment env = new Environment(names.toArray(new String[0]), new String[0]);
+			if (!reachable)
+				return new AWrapper(new Abstract1(man, env, true), man);
+			return new AWrapper(new Abstract1(man, env, names.toArray(new String[0]), bounds.toArray(new Interval[0])), man);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Range evaluate(DefinitionStmt def) {
+		if (cancelled)
+			throw new CancellationException("sparse analysis in " + domain + " was cancelled");
+		evaluations++;
+		PhiExpr phi = Shimple.getPhiExpr(def);
+		if (phi == null)
+			return evaluate(def.getRightOp(), ssa.guards.get(def));
+		List<List<SsaForm.Guard>> argGuards = ssa.argumentGuards.get(def);
+		Range joined = Range.BOTTOM;
+		List<ValueUnitPair> args = phi.getArgs();
+		for (int i = 0; i < args.size(); i++)
+			joined = joined.join(valueAt(args.get(i).getValue(), argGuards.get(i)));
+		return joined;
+	}
+
+	private Range evaluate(Value value, List<SsaForm.Guard> guards) {
+		if (value instanceof AddExpr)
+			return evaluate(((BinopExpr) value).getOp1(), guards).add(evaluate(((BinopExpr) value).getOp2(), guards));
+		if (value instanceof SubExpr)
+			return evaluate(((BinopExpr) value).getOp1(), guards).subtract(evaluate(((BinopExpr) value).getOp2(), guards));
+		if (value instanceof MulExpr)
+			return evaluate(((BinopExpr) value).getOp1(), guards).multiply(evaluate(((BinopExpr) value).getOp2(), guards));
+		if (value instanceof IntConstant || SsaForm.isIntLocal(value))
+			return valueAt(value, guards);
+		// parameters, fields, calls, divisions...
+		return Range.TOP;
+	}
+
+	// the value of an immediate where the guards hold
+	private Range valueAt(Value value, List<SsaForm.Guard> guards) {
+		if (!SsaForm.isIntLocal(value))
+			return valueOf(value);
+		Range range = valueOf(value);
+		for (SsaForm.Guard guard : guards)
+			range = refine(range, (Local) value, guard);
+		return range;
+	}
+
+	// the value of an immediate anywhere it is defined
+	private Range valueOf(Value value) {
+		if (value instanceof IntConstant)
+			return Range.of(((IntConstant) value).value);
+		if (!SsaForm.isIntLocal(value))
+			return Range.TOP;
+		Range range = values.get(value);
+		return range == null ? Range.BOTTOM : range;
+	}
+
+	// whether none of the guards contradicts what we know about the locals they compare
+	private boolean isFeasible(List<SsaForm.Guard> guards) {
+		for (SsaForm.Guard guard : guards) {
+			Value op1 = guard.condition.getOp1(), op2 = guard.condition.getOp2();
+			if (SsaForm.isIntLocal(op1) && refine(valueOf(op1), (Local) op1, guard).isBottom())
+				return false;
+			if (SsaForm.isIntLocal(op2) && refine(valueOf(op2), (Local) op2, guard).isBottom())
+				return false;
+		}
+		return true;
+	}
+
+	// restricts the range of a local by a guard comparing it to something else
+	private Range refine(Range range, Local local, SsaForm.Guard guard) {
+		ConditionExpr cond = guard.condition;
+		Value other;
+		boolean flipped;
+		if (cond.getOp1() == local) {
+			other = cond.getOp2();
+			flipped = false;
+		} else if (cond.getOp2() == local) {
+			other = cond.getOp1();
+			flipped = true;
+		} else {
+			return range;
+		}
+		return range.restrict(cond, guard.holds, flipped, valueOf(other));
+	}
+}
@@ -0,0 +1,198 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.*;
+import soot.jimple.*;
+import soot.shimple.*;
+import soot.tagkit.Tag;
+import soot.toolkits.graph.*;
+import soot.toolkits.scalar.ValueUnitPair;
+import soot.util.Chain;
+
+// a method in Shimple's SSA form, with everything the sparse analysis needs precomputed, since Soot isn't thread-safe
+public class SsaForm {
+
+	// a branch condition known to hold (or not) wherever it is attached
+	static class Guard {
+		final ConditionExpr condition;
+		final boolean holds;
+
+		Guard(ConditionExpr condition, boolean holds) {
+			this.condition = condition;
+			this.holds = holds;
+		}
+	}
+
+	// reachable definitions of integer locals, in program order
+	final List<DefinitionStmt> definitions = new ArrayList<DefinitionStmt>();
+	// definitions to re-evaluate when the value of a local changes
+	final Map<Local, List<DefinitionStmt>> dependents = new HashMap<Local, List<DefinitionStmt>>();
+	// guards holding at each definition and queried call
+	final Map<Unit, List<Guard>> guards = new HashMap<Unit, List<Guard>>();
+	// guards holding along the edge each argument of a phi node comes from
+	final Map<Unit, List<List<Guard>>> argumentGuards = new HashMap<Unit, List<List<Guard>>>();
+	// phi nodes with an argument coming around a loop, the only places we widen at
+	final Set<Unit> loopCarried = new HashSet<Unit>();
+	// the SSA version of each queried call, or null if it isn't reachable
+	final Map<Unit, InvokeStmt> calls = new HashMap<Unit, InvokeStmt>();
+	// false if some queried call couldn't be found in the SSA form, which then can't tell anything about it
+	final boolean complete;
+
+	// marks a queried call, since Soot copies the tags of the statements it clones into the SSA body
+	private static class CallTag implements Tag {
+		final Unit original;
+
+		CallTag(Unit original) {
+			this.original = original;
+		}
+
+		public String getName() {
+			return "SsaFormCall";
+		}
+
+		public byte[] getValue() {
+			return new byte[0];
+		}
+	}
+
+	private final UnitGraph graph;
+	private final Chain<Unit> units;
+	private final MHGDominatorsFinder<Unit> dominators;
+
+	// the calls are statements of the original body, to be queried later
+	SsaForm(Body body, Collection<? extends Unit> queried) {
+		long start = System.nanoTime();
+		for (Unit op : queried)
+			op.addTag(new CallTag(op));
+		ShimpleBody ssa;
+		try {
+			ssa = Shimple.v().newBody(body);
+		} finally {
+			for (Unit op : queried)
+				op.removeTag("SsaFormCall");
+		}
+		graph = new BriefUnitGraph(ssa);
+		units = ssa.getUnits();
+		dominators = new MHGDominatorsFinder<Unit>(graph);
+
+		Set<Unit> reachable = new HashSet<Unit>();
+		Deque<Unit> pending = new ArrayDeque<Unit>(graph.getHeads());
+		while (!pending.isEmpty()) {
+			Unit op = pending.pop();
+			if (reachable.add(op))
+				pending.addAll(graph.getSuccsOf(op));
+		}
+
+		for (Unit op : units) {
+			if (!reachable.contains(op) || !(op instanceof DefinitionStmt) || !isIntLocal(((DefinitionStmt) op).getLeftOp()))
+				continue;
+			DefinitionStmt def = (DefinitionStmt) op;
+			definitions.add(def);
+
+			PhiExpr phi = Shimple.getPhiExpr(def);
+			if (phi == null) {
+				List<Guard> defGuards = guardsAt(def);
+				guards.put(def, defGuards);
+				dependOnGuards(def, defGuards);
+				for (ValueBox use : def.getRightOp().getUseBoxes())
+					dependOn(def, use.getValue());
+				dependOn(def, def.getRightOp());
+				continue;
+			}
+			Unit head = blockHeadOf(def);
+			List<List<Guard>> edgeGuards = new ArrayList<List<Guard>>();
+			for (ValueUnitPair arg : phi.getArgs()) {
+				Unit pred = arg.getUnit();
+				List<Guard> argGuards = new ArrayList<Guard>(guardsAt(pred));
+				if (pred instanceof IfStmt)
+					addEdgeGuard(argGuards, (IfStmt) pred, head);
+				edgeGuards.add(argGuards);
+				dependOnGuards(def, argGuards);
+				dependOn(def, arg.getValue());
+				if (dominators.isDominatedBy(pred, head))
+					loopCarried.add(def);
+			}
+			argumentGuards.put(def, edgeGuards);
+		}
+
+		Set<Unit> found = new HashSet<Unit>();
+		for (Unit ssaOp : units) {
+			CallTag tag = (CallTag) ssaOp.getTag("SsaFormCall");
+			if (tag == null || !(ssaOp instanceof InvokeStmt))
+				continue;
+			ssaOp.removeTag("SsaFormCall");
+			found.add(tag.original);
+			if (reachable.contains(ssaOp)) {
+				calls.put(tag.original, (InvokeStmt) ssaOp);
+				guards.put(ssaOp, guardsAt(ssaOp));
+			}
+		}
+		complete = found.containsAll(queried);
+		if (!complete)
+			Stats.add("sparse.unmappedCalls", queried.size() - found.size());
+		Stats.addTime("sparse.ssaTime", start);
+		Stats.add("sparse.definitions", definitions.size());
+		Stats.add("sparse.loopCarriedPhis", loopCarried.size());
+	}
+
+	static boolean isIntLocal(Value value) {
+		return value instanceof Local && value.getType() instanceof IntegerType;
+	}
+
+	private void dependOn(DefinitionStmt def, Value value) {
+		if (!isIntLocal(value))
+			return;
+		List<DefinitionStmt> users = dependents.get(value);
+		if (users == null)
+			dependents.put((Local) value, users = new ArrayList<DefinitionStmt>());
+		if (!users.contains(def))
+			users.add(def);
+	}
+
+	// a guard refining one local uses the value of the other
+	private void dependOnGuards(DefinitionStmt def, List<Guard> guards) {
+		for (Guard guard : guards) {
+			dependOn(def, guard.condition.getOp1());
+			dependOn(def, guard.condition.getOp2());
+		}
+	}
+
+	// the conditions of the branches every path to the statement goes through; since the compared locals are defined
+	// before the branch and never change afterwards, the conditions still hold at the statement
+	private List<Guard> guardsAt(Unit op) {
+		List<Guard> guards = new ArrayList<Guard>();
+		for (Unit dominator = dominators.getImmediateDominator(op); dominator != null; dominator = dominators.getImmediateDominator(dominator)) {
+			if (!(dominator instanceof IfStmt))
+				continue;
+			IfStmt branch = (IfStmt) dominator;
+			for (Unit succ : new Unit[] { branch.getTarget(), units.getSuccOf(branch) })
+				if (succ != null && graph.getPredsOf(succ).size() == 1 && dominators.isDominatedBy(op, succ))
+					addEdgeGuard(guards, branch, succ);
+		}
+		return guards;
+	}
+
+	// adds the condition under which the branch goes on to succ
+	private void addEdgeGuard(List<Guard> guards, IfStmt branch, Unit succ) {
+		Unit target = branch.getTarget(), fall = units.getSuccOf(branch);
+		if (target == fall)
+			return;
+		if (succ == target)
+			guards.add(new Guard((ConditionExpr) branch.getCondition(), true));
+		else if (succ == fall)
+			guards.add(new Guard((ConditionExpr) branch.getCondition(), false));
+	}
+
+	// the first of the phi nodes at the start of a block, where its edges come in
+	private Unit blockHeadOf(Unit phi) {
+		Unit head = phi;
+		while (graph.getPredsOf(head).size() == 1) {
+			Unit pred = graph.getPredsOf(head).get(0);
+			if (Shimple.getPhiExpr(pred) == null || units.getSuccOf(pred) != head)
+				break;
+			head = pred;
+		}
+		return head;
+	}
+}
@@ -0,0 +1,79 @@
+package ch.ethz.sae;
+
+import java.lang.ref.*;
+import java.util.*;
+
+import apron.*;
+
+// interns the states of one analysis, so equal states are kept in native memory only once and shared by reference.
+// Apron frees an element's native memory when it is garbage collected, so the store only holds its states weakly: a state
+// nothing refers to anymore is dropped from the store and freed, which the store notices through its reference queue.
+public class StateStore {
+
+	private static class Entry extends WeakReference<Abstract1> {
+		final int hash;
+		final int size;
+
+		Entry(Abstract1 state, int hash, int size, ReferenceQueue<Abstract1> queue) {
+			super(state, queue);
+			this.hash = hash;
+			this.size = size;
+		}
+	}
+
+	private final Manager man;
+	private final HashMap<Integer, List<Entry>> entries = new HashMap<Integer, List<Entry>>();
+	private final ReferenceQueue<Abstract1> freed = new ReferenceQueue<Abstract1>();
+	// sizes of the states currently stored, as reported by Apron
+	private long liveSize = 0;
+	private long peakSize = 0;
+	private int hits = 0;
+
+	StateStore(Manager man) {
+		this.man = man;
+	}
+
+	// returns the stored state equal to the given one, storing it if there is none; the result must not be modified
+	Abstract1 intern(Abstract1 state) throws ApronException {
+		drain();
+		state.canonicalize(man);
+		int hash = state.hashCode(man);
+		List<Entry> bucket = entries.get(hash);
+		if (bucket == null) {
+			bucket = new ArrayList<Entry>(1);
+			entries.put(hash, bucket);
+		}
+		for (Entry entry : bucket) {
+			Abstract1 stored = entry.get();
+			if (stored != null && stored.isEqual(man, state)) {
+				hits++;
+				return stored;
+			}
+		}
+		Entry entry = new Entry(state, hash, state.getSize(man), freed);
+		bucket.add(entry);
+		liveSize += entry.size;
+		peakSize = Math.max(peakSize, liveSize);
+		return state;
+	}
+
+	private void drain() {
+		Reference<? extends Abstract1> ref;
+		while ((ref = freed.poll()) != null) {
+			Entry entry = (Entry) ref;
+			List<Entry> bucket = entries.get(entry.hash);
+			bucket.remove(entry);
+			if (bucket.isEmpty())
+				entries.remove(entry.hash);
+			liveSize -= entry.size;
+		}
+	}
+
+	long getPeakSize() {
+		return peakSize;
+	}
+
+	int getHits() {
+		return hits;
+	}
+}
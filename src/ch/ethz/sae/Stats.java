@@ -0,0 +1,60 @@
+package ch.ethz.sae;
+
+import java.io.PrintStream;
+import java.util.*;
+
+// counters and timers reported with --stats, shared by all threads
+public class Stats {
+
+	static volatile boolean enabled = false;
+
+	private static final TreeMap<String, Long> counters = new TreeMap<String, Long>();
+	private static final TreeMap<String, Long> timers = new TreeMap<String, Long>();
+
+	static void add(String name, long delta) {
+		if (!enabled) return;
+		synchronized (counters) {
+			Long value = counters.get(name);
+			counters.put(name, value == null ? delta : value + delta);
+		}
+	}
+
+	static void max(String name, long candidate) {
+		if (!enabled) return;
+		synchronized (counters) {
+			Long value = counters.get(name);
+			if (value == null || value < candidate)
+				counters.put(name, candidate);
+		}
+	}
+
+	// adds the time passed since start (as returned by System.nanoTime())
+	static void addTime(String name, long start) {
+		if (!enabled) return;
+		long elapsed = System.nanoTime() - start;
+		synchronized (timers) {
+			Long value = timers.get(name);
+			timers.put(name, value == null ? elapsed : value + elapsed);
+		}
+	}
+
+	static void print(PrintStream out) {
+		if (!enabled) return;
+		synchronized (counters) {
+			for (Map.Entry<String, Long> counter : counters.entrySet()) {
+				String name = counter.getKey();
+				out.println("[Stats] " + name + " = " + counter.getValue());
+				// e.g. how many of the methods analyzed in a domain were proven safe in it
+				if (name.endsWith(".proved")) {
+					Long runs = counters.get(name.substring(0, name.length() - ".proved".length()) + ".runs");
+					if (runs != null && runs > 0)
+						out.println("[Stats] " + name.replace(".proved", ".hit-rate") + " = " + 100 * counter.getValue() / runs + "%");
+				}
+			}
+		}
+		synchronized (timers) {
+			for (Map.Entry<String, Long> timer : timers.entrySet())
+				out.println("[Stats] " + timer.getKey() + " = " + timer.getValue() / 1000000 + " ms");
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package ch.ethz.sae;
+
+import apron.*;
+
+// the transfer function of a statement, compiled once for the environment of an analysis
+public class Transfer {
+
+	enum Kind {
+		// doesn't touch any variable we track
+		IDENTITY,
+		// assigns an expression we can represent to a tracked variable
+		ASSIGN,
+		// assigns something we can't represent to a tracked variable, which then could be anything
+		HAVOC,
+		// restricts the fall-through and branch states by a condition over tracked variables
+		GUARD,
+		// never reached from the method's entry, so its input stays bottom
+		UNREACHABLE
+	}
+
+	static final Transfer IDENTITY = new Transfer(Kind.IDENTITY, null, null, null, null);
+	static final Transfer UNREACHABLE = new Transfer(Kind.UNREACHABLE, null, null, null, null);
+
+	final Kind kind;
+	private final String var;
+	private final Texpr1Intern value;
+	// the output along an edge is the join of the input met with each of these alternatives
+	private final Tcons1[] fall, branch;
+
+	Transfer(Kind kind, String var, Texpr1Intern value, Tcons1[] fall, Tcons1[] branch) {
+		this.kind = kind;
+		this.var = var;
+		this.value = value;
+		this.fall = fall;
+		this.branch = branch;
+	}
+
+	static Transfer assign(String var, Texpr1Intern value) {
+		return new Transfer(Kind.ASSIGN, var, value, null, null);
+	}
+
+	static Transfer havoc(String var) {
+		return new Transfer(Kind.HAVOC, var, null, null, null);
+	}
+
+	static Transfer guard(Tcons1[] fall, Tcons1[] branch) {
+		return new Transfer(Kind.GUARD, null, null, fall, branch);
+	}
+
+	// the state flowing out along the fall-through or branch edge; the input itself if the statement doesn't change it
+	Abstract1 apply(Manager man, Abstract1 in, boolean branching) throws ApronException {
+		switch (kind) {
+		case ASSIGN:
+			return in.assignCopy(man, var, value, null);
+		case HAVOC:
+			return in.forgetCopy(man, var, false);
+		case GUARD:
+			Tcons1[] alternatives = branching ? branch : fall;
+			Abstract1 out = in.meetCopy(man, alternatives[0]);
+			for (int i = 1; i < alternatives.length; i++)
+				out.join(man, in.meetCopy(man, alternatives[i]));
+			return out;
+		default:
+			return in;
+		}
+	}
+
+	public String toString() {
+		return kind + (var == null ? "" : " " + var);
+	}
+}
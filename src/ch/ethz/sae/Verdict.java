@@ -0,0 +1,53 @@
+package ch.ethz.sae;
+
+import java.io.PrintStream;
+
+// result of verifying a class (or a single method of it)
+public class Verdict {
+
+	boolean weldAtOK = true;
+	boolean weldBetweenOK = true;
+
+	public Verdict() {
+	}
+
+	public Verdict(boolean weldAtOK, boolean weldBetweenOK) {
+		this.weldAtOK = weldAtOK;
+		this.weldBetweenOK = weldBetweenOK;
+	}
+
+	public boolean isWeldAtOK() {
+		return weldAtOK;
+	}
+
+	public boolean isWeldBetweenOK() {
+		return weldBetweenOK;
+	}
+
+	// combines the verdict of another method into this one
+	void add(Verdict other) {
+		weldAtOK = weldAtOK && other.weldAtOK;
+		weldBetweenOK = weldBetweenOK && other.weldBetweenOK;
+	}
+
+	// prints the verdict in the format expected by the test scripts
+	void print(PrintStream out, String analyzedClass) {
+		out.print(analyzedClass + " WELD_AT_");
+		out.println(weldAtOK ? "OK" : "NOT_OK");
+
+		out.print(analyzedClass + " WELD_BETWEEN_");
+		out.println(weldBetweenOK ? "OK" : "NOT_OK");
+	}
+
+	// parses the output of toString, returning null if it's malformed
+	static Verdict parse(String line) {
+		String[] parts = line.trim().split(" ");
+		if (parts.length != 2 || !parts[0].startsWith("WELD_AT_") || !parts[1].startsWith("WELD_BETWEEN_"))
+			return null;
+		return new Verdict(parts[0].equals("WELD_AT_OK"), parts[1].equals("WELD_BETWEEN_OK"));
+	}
+
+	public String toString() {
+		return "WELD_AT_" + (weldAtOK ? "OK" : "NOT_OK") + " WELD_BETWEEN_" + (weldBetweenOK ? "OK" : "NOT_OK");
+	}
+}
@@ -1,6 +1,8 @@
 package ch.ethz.sae;
 
+import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import apron.*;
 import soot.*;
@@ -9,65 +11,560 @@ import soot.jimple.internal.*;
 import soot.jimple.spark.SparkTransformer;
 import soot.jimple.spark.pag.*;
 import soot.jimple.spark.sets.*;
-import soot.toolkits.graph.BriefUnitGraph;
+import soot.jimple.toolkits.annotation.logic.Loop;
+import soot.toolkits.graph.*;
+import soot.toolkits.scalar.*;
 
 public class Verifier {
 	
 	public static void main(String[] args) {
-		if (args.length != 1) {
-			System.err.println("Usage: java -classpath soot-2.5.0.jar:./bin ch.ethz.sae.Verifier <class to test>");
+		Config config;
+		try {
+			config = Config.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.print(Config.USAGE);
 			System.exit(-1);
+			return;
 		}
-		String analyzedClass = args[0];
-		
-		SootClass c = loadClass(analyzedClass);
-		PAG pointsToAnalysis = doPointsToAnalysis(c);
+		Stats.enabled = config.stats;
+		if (config.server) {
+			serve(config);
+			return;
+		}
+		// in batch mode, one broken class shouldn't take down the whole run
+		boolean batch = config.classNames.size() > 1;
+		LinkedHashSet<String> analyzedClasses = new LinkedHashSet<String>(config.classNames);
+
+		// look up verdicts of unchanged classes, and of classes that don't weld at all, before touching Soot
+		ResultCache cache = config.cacheDir == null ? null : new ResultCache(config.cacheDir, config.cacheSize);
+		HashMap<String, String> cacheKeys = new HashMap<String, String>();
+		HashMap<String, Verdict> known = new HashMap<String, Verdict>();
+		String classPath = System.getProperty("java.class.path");
+		for (String analyzedClass : analyzedClasses) {
+			byte[] bytecode = ClassFiles.read(analyzedClass, classPath);
+			if (bytecode == null)
+				continue;
+			if (!ClassFiles.referencesWeld(bytecode)) {
+				Logger.log(analyzedClass, "never welds");
+				Stats.add("prescan.skipped", 1);
+				known.put(analyzedClass, new Verdict());
+			} else if (cache != null) {
+				String key = cacheKey(bytecode, config);
+				cacheKeys.put(analyzedClass, key);
+				Verdict verdict = lookupVerdict(cache, key);
+				if (verdict != null)
+					known.put(analyzedClass, verdict);
+			}
+		}
+
+		// load everything else into the same Scene so Spark only has to run once
+		LinkedHashMap<String, SootClass> classes = new LinkedHashMap<String, SootClass>();
+		for (String analyzedClass : analyzedClasses) {
+			if (known.containsKey(analyzedClass))
+				continue;
+			try {
+				classes.put(analyzedClass, loadClass(analyzedClass));
+			} catch (RuntimeException e) {
+				if (!batch) throw e;
+				System.err.println("Could not load " + analyzedClass + ": " + e);
+				classes.put(analyzedClass, null);
+			}
+		}
+		PAG pointsToAnalysis = classes.isEmpty() ? null : doPointsToAnalysis(classes.values());
+
+		ExecutorService workers = config.jobs > 1 ? Executors.newFixedThreadPool(config.jobs) : null;
+		try {
+			for (String analyzedClass : analyzedClasses) {
+				Verdict verdict = known.get(analyzedClass);
+				if (verdict != null) {
+					Logger.log("Using known verdict for", analyzedClass);
+				} else if (classes.get(analyzedClass) == null) {
+					verdict = new Verdict(false, false);
+				} else {
+					try {
+						verdict = verifyClass(classes.get(analyzedClass), pointsToAnalysis, workers, config, cache);
+						if (cacheKeys.containsKey(analyzedClass))
+							storeVerdict(cache, cacheKeys.get(analyzedClass), verdict);
+					} catch (RuntimeException e) {
+						if (!batch) throw e;
+						System.err.println("Verifying " + analyzedClass + " failed: " + e);
+						e.printStackTrace();
+						verdict = new Verdict(false, false);
+					}
+				}
+				verdict.print(System.out, analyzedClass);
+			}
+		} finally {
+			if (workers != null)
+				workers.shutdownNow();
+		}
+		Stats.print(System.err);
+	}
+
+	// identifies a class's verdict: its bytecode plus everything else the verdict depends on
+	static String cacheKey(byte[] bytecode, Config config) {
+		try {
+			return ResultCache.hash(bytecode, config.analysisKey().getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static Verdict lookupVerdict(ResultCache cache, String key) {
+		List<String> lines = cache.lookup(key);
+		return lines == null || lines.isEmpty() ? null : Verdict.parse(lines.get(0));
+	}
+
+	static void storeVerdict(ResultCache cache, String key, Verdict verdict) {
+		cache.store(key, Collections.singletonList(verdict.toString()));
+	}
+
+	private static void serve(Config config) {
+		VerifierServer server = new VerifierServer(config);
+		try {
+			if (config.port == 0)
+				server.serveStdin();
+			else
+				server.serveSocket(config.port);
+		} catch (Exception e) {
+			System.err.println("Server failed: " + e);
+			System.exit(-1);
+		}
+	}
 
+	// verifies all methods of an already loaded class, on the given workers if there are any
+	static Verdict verifyClass(SootClass c, PAG pointsToAnalysis, ExecutorService workers, Config config, ResultCache cache) {
 		final boolean continueAfterFailure = false;
-		boolean weldAtOK = true;
-		boolean weldBetweenOK = true;
+		Verdict verdict = new Verdict();
+		List<Future<Verdict>> results = new ArrayList<Future<Verdict>>();
+		Set<SootMethod> welding = weldingMethods(c);
 		for (SootMethod method : c.getMethods()) {
 			
 			if (method.isConstructor())
 				continue;
+			// without calls to check, any method is fine
+			if (!welding.contains(method)) {
+				Logger.log("Skipping", method.getSignature() + ", which doesn't weld");
+				Stats.add("relevance.skipped", 1);
+				continue;
+			}
 			
 			Logger.log();
 			
-			Verifier verifier = new Verifier(method.retrieveActiveBody(), c, pointsToAnalysis);
+			final Verifier verifier = new Verifier(method.retrieveActiveBody(), c, pointsToAnalysis, config, cache);
 			
-			if (continueAfterFailure || weldAtOK)
-				weldAtOK = verifier.verifyCallsTo("weldAt") && weldAtOK;
-			if (continueAfterFailure || weldBetweenOK)
-				weldBetweenOK = verifier.verifyCallsTo("weldBetween") && weldBetweenOK;
+			if (workers == null) {
+				// cached results need both checks, so only skip them if there's no cache
+				boolean checkWeldAt = continueAfterFailure || cache != null || verdict.weldAtOK;
+				boolean checkWeldBetween = continueAfterFailure || cache != null || verdict.weldBetweenOK;
+				verdict.add(verifier.verify(checkWeldAt, checkWeldBetween));
+			} else {
+				results.add(workers.submit(new Callable<Verdict>() {
+					public Verdict call() {
+						return verifier.verify(true, true);
+					}
+				}));
+			}
 		}
 
-		System.out.print(analyzedClass + " WELD_AT_");
-		System.out.println(weldAtOK ? "OK" : "NOT_OK");
-		
-		System.out.print(analyzedClass + " WELD_BETWEEN_");
-		System.out.println(weldBetweenOK ? "OK" : "NOT_OK");
+		// merge in method order, so the verdict doesn't depend on scheduling
+		for (Future<Verdict> result : results)
+			verdict.add(await(result));
+		return verdict;
+	}
+
+	// the methods calling weldAt or weldBetween themselves, by name only, so nothing gets resolved; calls are checked
+	// where they are made, so methods only reaching them through other methods have nothing to verify either
+	static Set<SootMethod> weldingMethods(SootClass c) {
+		Set<SootMethod> welding = new HashSet<SootMethod>();
+		for (SootMethod method : c.getMethods()) {
+			if (method.isConstructor())
+				continue;
+			for (Unit op : method.retrieveActiveBody().getUnits()) {
+				if (op instanceof JInvokeStmt && WELD_METHODS.contains(((JInvokeStmt) op).getInvokeExpr().getMethodRef().getName())) {
+					welding.add(method);
+					break;
+				}
+			}
+		}
+		return welding;
+	}
+
+	private static final List<String> WELD_METHODS = Arrays.asList("weldAt", "weldBetween");
+
+	// waits for a worker's result, rethrowing whatever it failed with
+	private static Verdict await(Future<Verdict> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
 	}
 	
 	private HashMap<Value, Interval> robotConstraints;
+	private Set<Integer> robotBoundConstants;
+	private HashMap<String, LinkedList<JInvokeStmt>> invocations;
+	private HashMap<JInvokeStmt, Interval> bounds;
 	private PatchingChain<Unit> ops;
-	private Analysis fixPoint;
+	private NumericalAnalysis fixPoint;
 	private PAG pointsTo;
+
+	// what's needed to (re-)run the analysis, possibly in several domains
+	private SootClass c;
+	private UnitGraph graph;
+	private LoopNestTree loops;
+	private List<Domain> domains;
+	private boolean portfolio;
+	// groups of related variables to analyze separately, or null to analyze all variables together
+	private Packing packing;
+	// integer locals to forget after each statement, or null to keep them all
+	private Map<Unit, String[]> deadVariables;
+	// order to iterate the statements in, or null to use Soot's worklist
+	private WeakTopologicalOrder<Unit> wto;
+	private BlockGraph blocks;
+	private WeakTopologicalOrder<Block> blockOrder;
+	private SsaForm ssa;
+	private Slice slice;
+	private Pruning pruning;
+	// constants to use as widening thresholds, or null to widen plainly
+	private Set<Integer> thresholds;
+	private int narrowingRounds;
+	private boolean adaptiveWidening;
+	private boolean internStates;
+	private boolean abstract0;
+	// loops whose head states are computed in closed form, by head, or null to iterate all loops
+	private Map<Unit, CountingLoop> countingLoops;
+
+	// per-method results are cached under a fingerprint of everything the analysis of the method sees
+	private ResultCache cache;
+	private String fingerprint;
+	private Verdict cachedVerdict;
 	
-	private Verifier(Body body, SootClass c, PAG pointsTo) {
+	// everything touching Soot's global state happens here, on the calling thread
+	private Verifier(Body body, SootClass c, PAG pointsTo, Config config, ResultCache cache) {
 		this.pointsTo = pointsTo;
-		
-		fixPoint = new Analysis(new BriefUnitGraph(body), c);
-		fixPoint.run();
-		Logger.log();
+		this.cache = cache;
+		this.c = c;
+		this.domains = config.domains;
+		this.portfolio = config.portfolio;
+		this.narrowingRounds = config.narrowingRounds;
+		this.adaptiveWidening = config.adaptiveWidening;
+		this.internStates = config.internStates;
+		this.abstract0 = config.abstract0;
 		
 		ops = body.getUnits();
 		
 		parseRobotInitializations(body.getUnits());
+
+		invocations = new HashMap<String, LinkedList<JInvokeStmt>>();
+		invocations.put("weldAt", getInvokeCalls("weldAt"));
+		invocations.put("weldBetween", getInvokeCalls("weldBetween"));
+
+		// the bounds only depend on the points-to analysis, so they're known before the numerical analysis runs
+		bounds = new HashMap<JInvokeStmt, Interval>();
+		for (LinkedList<JInvokeStmt> calls : invocations.values()) {
+			for (JInvokeStmt stmt : calls) {
+				try {
+					bounds.put(stmt, getCurrentConstraints(stmt));
+				} catch (RuntimeException e) {
+					// verifying this call will fail
+					Logger.log("Couldn't determine the bounds of", stmt + ":", e);
+					e.printStackTrace();
+				}
+			}
+		}
+
+		if (cache != null) {
+			fingerprint = fingerprint(body, c, config);
+			List<String> cachedResult = cache.lookup(fingerprint);
+			if (cachedResult != null && !cachedResult.isEmpty())
+				cachedVerdict = Verdict.parse(cachedResult.get(0));
+			if (cachedVerdict != null) {
+				Logger.log("Reusing cached result of", body.getMethod().getSignature() + ":", cachedResult);
+				return;
+			}
+		}
+		
+		BriefUnitGraph unitGraph = new BriefUnitGraph(body);
+		if (config.pruning) {
+			long start = System.nanoTime();
+			pruning = new Pruning(unitGraph);
+			unitGraph = new Pruning.PrunedGraph(body, pruning);
+			Stats.addTime("pruning.time", start);
+		}
+		graph = unitGraph;
+		loops = new LoopNestTree(body);
+		if (config.packing)
+			packing = new Packing(body);
+		if (config.slicing)
+			slice = new Slice(graph);
+		if (config.liveness) {
+			long start = System.nanoTime();
+			deadVariables = Analysis.deadVariables(graph);
+			Stats.addTime("liveness.time", start);
+		}
+		if (config.engine == Engine.WTO)
+			wto = new WeakTopologicalOrder<Unit>(graph);
+		if (config.engine == Engine.BLOCKS) {
+			// from the graph the analysis sees, so the blocks don't follow the edges pruning removed
+			blocks = new BriefBlockGraph(unitGraph);
+			blockOrder = new WeakTopologicalOrder<Block>(blocks);
+			Stats.add("blocks.blocks", blocks.size());
+			Stats.add("blocks.units", body.getUnits().size());
+		}
+		if (config.engine == Engine.SPARSE) {
+			try {
+				ssa = new SsaForm(body, bounds.keySet());
+			} catch (RuntimeException e) {
+				Logger.log("Couldn't convert", body.getMethod().getSignature(), "to SSA form:", e);
+			}
+			// without all calls, the sparse analysis would take the missing ones for unreachable
+			if (ssa == null || !ssa.complete) {
+				Logger.log("Falling back to the worklist for", body.getMethod().getSignature());
+				Stats.add("sparse.fallbacks", 1);
+				ssa = null;
+			}
+		}
+		if (config.thresholdWidening)
+			thresholds = thresholdConstants();
+		if (config.acceleration) {
+			countingLoops = new HashMap<Unit, CountingLoop>();
+			LiveLocals liveness = new SimpleLiveLocals(graph);
+			for (Loop loop : loops) {
+				CountingLoop counting = CountingLoop.recognize(loop, loops, liveness);
+				if (counting != null)
+					countingLoops.put(counting.head, counting);
+			}
+			Stats.add("acceleration.loops", loops.size());
+			Stats.add("acceleration.recognized", countingLoops.size());
+		}
+	}
+
+	// the robot bounds and the constants loop conditions compare against (and their neighbors, for strict comparisons)
+	private Set<Integer> thresholdConstants() {
+		Set<Integer> constants = new TreeSet<Integer>(robotBoundConstants);
+		for (Loop loop : loops) {
+			for (Stmt s : loop.getLoopStatements()) {
+				if (!(s instanceof IfStmt))
+					continue;
+				for (ValueBox use : ((IfStmt) s).getCondition().getUseBoxes()) {
+					if (use.getValue() instanceof IntConstant) {
+						int c = ((IntConstant) use.getValue()).value;
+						constants.add(c - 1);
+						constants.add(c);
+						constants.add(c + 1);
+					}
+				}
+			}
+		}
+		Stats.max("thresholds.maxConstants", constants.size());
+		return constants;
+	}
+
+	private NumericalAnalysis newAnalysis(Domain domain) {
+		if (ssa != null)
+			return new SparseAnalysis(ssa, domain);
+		if (packing != null) {
+			PackedAnalysis packed = new PackedAnalysis(graph, c, domain, loops, packing);
+			for (Analysis part : packed.parts())
+				configure(part);
+			return packed;
+		}
+		Analysis analysis = new Analysis(graph, c, domain, loops, slice == null ? null : slice.variables());
+		configure(analysis);
+		return analysis;
+	}
+
+	private void configure(Analysis analysis) {
+		if (pruning != null)
+			analysis.foldConstants(pruning.folded);
+		if (deadVariables != null)
+			analysis.forgetAfter(deadVariables);
+		if (wto != null)
+			analysis.iterateAlong(wto);
+		if (blockOrder != null)
+			analysis.iterateBlocks(blocks, blockOrder);
+		if (thresholds != null)
+			analysis.widenWithThresholds(thresholds);
+		if (narrowingRounds > 0)
+			analysis.narrowAfterWidening(narrowingRounds);
+		if (countingLoops != null)
+			analysis.accelerate(countingLoops);
+		if (internStates)
+			analysis.internStates();
+		if (abstract0)
+			analysis.compileToDimensions();
+		if (adaptiveWidening)
+			analysis.useWideningPolicy(new AdaptiveWideningPolicy(graph.getBody(), loops, analysis.getWideningDelay()));
+	}
+
+	// hashes the method body, the integer fields of its class, the robot bounds at each weld call and the analysis options
+	private String fingerprint(Body body, SootClass c, Config config) {
+		StringBuilder inputs = new StringBuilder();
+		inputs.append(body).append('\n');
+		for (SootField field : c.getFields())
+			if (field.getType() instanceof IntegerType)
+				inputs.append(field.getName()).append(' ');
+		inputs.append('\n');
+		for (Unit op : ops)
+			if (bounds.containsKey(op))
+				inputs.append(bounds.get(op)).append(' ');
+		inputs.append('\n').append(config.analysisKey());
+		try {
+			return ResultCache.hash("method".getBytes("UTF-8"), inputs.toString().getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// runs the numerical analysis and checks the calls; only uses state owned by this verifier, so it may run on a worker thread
+	private Verdict verify(boolean checkWeldAt, boolean checkWeldBetween) {
+		if (cachedVerdict != null)
+			return cachedVerdict;
+		if (portfolio)
+			return verifyInPortfolio(checkWeldAt, checkWeldBetween);
+
+		// a call proven safe in a cheaper domain stays proven, so later domains only have to check the rest
+		boolean weldAtProven = !checkWeldAt;
+		boolean weldBetweenProven = !checkWeldBetween;
+		for (Domain domain : domains) {
+			long start = System.nanoTime();
+			fixPoint = newAnalysis(domain);
+			fixPoint.run();
+			Logger.log();
+
+			weldAtProven = weldAtProven || verifyCallsTo("weldAt", fixPoint);
+			weldBetweenProven = weldBetweenProven || verifyCallsTo("weldBetween", fixPoint);
+			Stats.addTime("tier." + domain + ".time", start);
+			Stats.add("tier." + domain + ".runs", 1);
+
+			if (weldAtProven && weldBetweenProven) {
+				Stats.add("tier." + domain + ".proved", 1);
+				break;
+			}
+		}
+		// whatever the most precise domain couldn't prove is reported as not ok
+		Verdict verdict = new Verdict(weldAtProven, weldBetweenProven);
+
+		if (checkWeldAt && checkWeldBetween)
+			storeResult(verdict);
+		return verdict;
+	}
+
+	// stores the verdict of the method under its fingerprint, if results are cached
+	private void storeResult(Verdict verdict) {
+		if (cache != null)
+			// only the verdict is read back, so the invariants aren't worth computing, let alone storing
+			cache.store(fingerprint, Collections.singletonList(verdict.toString()));
+	}
+
+	// runs all domains at once: the first to prove every call wins and the others are cancelled
+	private Verdict verifyInPortfolio(final boolean checkWeldAt, final boolean checkWeldBetween) {
+		CompletionService<Verdict> runs = new ExecutorCompletionService<Verdict>(portfolioPool());
+		HashMap<Future<Verdict>, NumericalAnalysis> analyses = new HashMap<Future<Verdict>, NumericalAnalysis>();
+		RuntimeException failure = null;
+		for (Domain domain : domains) {
+			final NumericalAnalysis analysis;
+			try {
+				analysis = newAnalysis(domain);
+			} catch (LinkageError e) {
+				// the domain's native library isn't available, the others may still prove everything
+				Logger.log("Can't analyze in", domain + ":", e);
+				failure = new RuntimeException(e);
+				continue;
+			}
+			analyses.put(runs.submit(new Callable<Verdict>() {
+				public Verdict call() {
+					long start = System.nanoTime();
+					analysis.run();
+					Verdict proven = new Verdict(!checkWeldAt || verifyCallsTo("weldAt", analysis),
+							!checkWeldBetween || verifyCallsTo("weldBetween", analysis));
+					Stats.addTime("portfolio." + analysis.getDomain() + ".time", start);
+					return proven;
+				}
+			}), analysis);
+		}
+
+		// a call proven in any domain is safe, so the results of the domains that finished add up
+		Verdict proven = new Verdict(false, false);
+		NumericalAnalysis winner = null;
+		List<NumericalAnalysis> finished = new ArrayList<NumericalAnalysis>();
+		for (int i = 0; i < analyses.size() && winner == null; i++) {
+			Future<Verdict> run;
+			try {
+				run = runs.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			NumericalAnalysis analysis = analyses.get(run);
+			Verdict result;
+			try {
+				result = await(run);
+			} catch (RuntimeException e) {
+				Logger.log("Analysis in", analysis.getDomain(), "failed:", e);
+				failure = e;
+				continue;
+			}
+			finished.add(analysis);
+			proven.weldAtOK = proven.weldAtOK || result.weldAtOK;
+			proven.weldBetweenOK = proven.weldBetweenOK || result.weldBetweenOK;
+			if (result.weldAtOK && result.weldBetweenOK) {
+				winner = analysis;
+				Stats.add("portfolio." + analysis.getDomain() + ".won", 1);
+			}
+		}
+
+		for (Map.Entry<Future<Verdict>, NumericalAnalysis> run : analyses.entrySet()) {
+			if (run.getValue() != winner) {
+				run.getValue().cancel();
+				run.getKey().cancel(true);
+			}
+		}
+		if (finished.isEmpty())
+			throw failure;
+		// a domain that failed might have proven more, unless one of the others proved everything anyway
+		if (checkWeldAt && checkWeldBetween && (winner != null || failure == null))
+			storeResult(proven);
+
+		// keep the invariants of the winner, or else of the most precise domain that finished
+		fixPoint = winner;
+		if (fixPoint == null)
+			for (NumericalAnalysis analysis : finished)
+				if (fixPoint == null || analysis.getDomain().compareTo(fixPoint.getDomain()) > 0)
+					fixPoint = analysis;
+		return proven;
+	}
+
+	private static ExecutorService portfolioPool;
+
+	// portfolio runs get their own threads, so a method being verified on a --jobs worker can't starve its own runs
+	private static synchronized ExecutorService portfolioPool() {
+		if (portfolioPool == null) {
+			portfolioPool = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "verifier-portfolio");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return portfolioPool;
 	}
 
 	// analyzes all initialization of robots and saves them to robotContraints
 	private void parseRobotInitializations(PatchingChain<Unit> ops) {
 		robotConstraints = new HashMap<Value, Interval>();
+		robotBoundConstants = new TreeSet<Integer>();
 		for (Unit op : ops) {
 			// search for initialization of the robot
 			if (op instanceof JInvokeStmt) {
@@ -76,6 +573,8 @@ public class Verifier {
 				if (init.getMethod().isConstructor()) {
 					// construct interval from arguments to robot constructor
 					Interval interval = new Interval(toInt(init.getArg(0)), toInt(init.getArg(1)));
+					robotBoundConstants.add(toInt(init.getArg(0)));
+					robotBoundConstants.add(toInt(init.getArg(1)));
 					Value robotName = getCallee(invoke);
 					robotConstraints.put(robotName, interval);
 				}
@@ -86,18 +585,18 @@ public class Verifier {
 	}
 
 	// checks if all calls to the given method (weldAt/weldBetween) are valid
-	private boolean verifyCallsTo(String methodName) {
+	private boolean verifyCallsTo(String methodName, NumericalAnalysis fixPoint) {
 		try {
 			Logger.log("Verifying", methodName + "...");
 
-			// search for all calls to the method
-			LinkedList<JInvokeStmt> invocations = getInvokeCalls(methodName);
-			if (invocations.isEmpty()) {
+			// look up all calls to the method
+			LinkedList<JInvokeStmt> calls = invocations.get(methodName);
+			if (calls.isEmpty()) {
 				Logger.logIndenting(1, "No calls to", methodName);
 				return true;
 			}
 
-			return doArgsOfInvocationsLieWithinBounds(invocations);
+			return doArgsOfInvocationsLieWithinBounds(calls, fixPoint);
 		} catch (Exception e) {
 			Logger.log("Returning false because I caught an exception:", e);
 			e.printStackTrace();
@@ -106,13 +605,20 @@ public class Verifier {
 	}
 
 	// checks if all the arguments used in weldAt/weldBetween lie within the respective constraints
-	private boolean doArgsOfInvocationsLieWithinBounds(List<JInvokeStmt> invocations) throws ApronException {
+	private boolean doArgsOfInvocationsLieWithinBounds(List<JInvokeStmt> invocations, NumericalAnalysis fixPoint) throws ApronException {
 		final boolean verbose = true;
 		boolean constraintsViolated = false;
 		Logger.logIndenting(1, "Checking constraints...");
 
 		for (JInvokeStmt stmt : invocations) {
-			Interval bounds = getCurrentConstraints(stmt);
+			if (pruning != null && !pruning.isReachable(stmt)) {
+				Logger.logIndenting(2, stmt, "can't be reached");
+				Stats.add("pruning.unreachableCalls", 1);
+				continue;
+			}
+			Interval bounds = this.bounds.get(stmt);
+			if (bounds == null)
+				throw new IllegalStateException("no robot bounds known for " + stmt);
 			Texpr1Node lo = new Texpr1CstNode(bounds.inf);
 			Texpr1Node hi = new Texpr1CstNode(bounds.sup);
 			
@@ -257,15 +763,19 @@ public class Verifier {
 	}
 
 	// Soot setup
-	private static SootClass loadClass(String name) {
+	static SootClass loadClass(String name) {
 		SootClass c = Scene.v().loadClassAndSupport(name);
 		c.setApplicationClass();
 		return c;
 	}
 
-	// performs points-to analysis
-	private synchronized static PAG doPointsToAnalysis(SootClass c) {
-		Scene.v().setEntryPoints(c.getMethods());
+	// performs points-to analysis, once for all given classes
+	synchronized static PAG doPointsToAnalysis(Collection<SootClass> classes) {
+		List<SootMethod> entryPoints = new ArrayList<SootMethod>();
+		for (SootClass c : classes)
+			if (c != null)
+				entryPoints.addAll(c.getMethods());
+		Scene.v().setEntryPoints(entryPoints);
 
 		HashMap<String, String> options = new HashMap<String, String>();
 		options.put("enabled", "true");
@@ -0,0 +1,254 @@
+package ch.ethz.sae;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import soot.*;
+import soot.jimple.spark.pag.PAG;
+
+// resident mode: keeps the JVM, Apron and Soot warm and answers one class name (or class file path) per line
+public class VerifierServer {
+
+	private static class Request {
+		final String line;
+		final PrintStream out;
+		final Connection connection; // where the request came from, or null for stdin
+
+		Request(String line, PrintStream out, Connection connection) {
+			this.line = line;
+			this.out = out;
+			this.connection = connection;
+		}
+	}
+
+	// counts the requests of a client that are still waiting for their answers
+	private static class Connection {
+		private int pending;
+
+		synchronized void sent() {
+			pending++;
+		}
+
+		synchronized void answered() {
+			pending--;
+			notifyAll();
+		}
+
+		synchronized void awaitAnswers() throws InterruptedException {
+			while (pending > 0)
+				wait();
+		}
+	}
+
+	// tells the processing thread to stop once everything before it is answered
+	private static final Request SHUTDOWN = new Request(null, null, null);
+
+	private final Config config;
+	private final BlockingQueue<Request> queue;
+	private final ExecutorService workers;
+	private final ResultCache cache;
+
+	// modification times of the class files loaded into the current Scene, to notice when they change
+	private final HashMap<String, Long> loaded = new HashMap<String, Long>();
+	// directories of class files requested by path, which have to be on Soot's class path
+	private final LinkedHashSet<String> classPathDirs = new LinkedHashSet<String>();
+
+	VerifierServer(Config config) {
+		this.config = config;
+		queue = new ArrayBlockingQueue<Request>(config.queueSize);
+		workers = config.jobs > 1 ? Executors.newFixedThreadPool(config.jobs) : null;
+		cache = config.cacheDir == null ? null : new ResultCache(config.cacheDir, config.cacheSize);
+	}
+
+	// answers requests from stdin on stdout until stdin is closed; a full queue simply stops us from reading further
+	void serveStdin() throws IOException, InterruptedException {
+		Thread processor = startProcessor();
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#"))
+				queue.put(new Request(line, System.out, null));
+		}
+		queue.put(SHUTDOWN);
+		processor.join();
+		shutdown();
+	}
+
+	// answers requests from local TCP connections until the process is killed; a full queue is answered with BUSY
+	void serveSocket(int port) throws IOException {
+		startProcessor();
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(null));
+		System.err.println("Verifier listening on " + server.getLocalSocketAddress());
+		while (true) {
+			final Socket client = server.accept();
+			Thread connection = new Thread("verifier-connection-" + client.getPort()) {
+				public void run() {
+					handleConnection(client);
+				}
+			};
+			connection.setDaemon(true);
+			connection.start();
+		}
+	}
+
+	// once the client stops sending, the socket is closed as soon as all its requests are answered
+	private void handleConnection(Socket client) {
+		Connection connection = new Connection();
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+			PrintStream out = new PrintStream(client.getOutputStream(), true);
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				connection.sent();
+				if (!queue.offer(new Request(line, out, connection))) {
+					connection.answered();
+					synchronized (out) {
+						out.println(line + " BUSY");
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Connection failed: " + e);
+		} finally {
+			try {
+				connection.awaitAnswers();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				client.close();
+			} catch (IOException e) {
+				System.err.println("Closing connection failed: " + e);
+			}
+		}
+	}
+
+	private Thread startProcessor() {
+		Thread processor = new Thread("verifier-processor") {
+			public void run() {
+				try {
+					process();
+				} catch (Throwable t) {
+					// nobody else drains the queue, so accepting further requests would only make clients hang
+					System.err.println("Processing failed: " + t);
+					t.printStackTrace();
+					System.exit(1);
+				}
+			}
+		};
+		processor.setDaemon(true);
+		processor.start();
+		return processor;
+	}
+
+	// Soot isn't thread-safe, so all requests are handled one after the other on this thread
+	private void process() {
+		while (true) {
+			Request request;
+			try {
+				request = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (request == SHUTDOWN)
+				return;
+
+			long start = System.nanoTime();
+			String name = request.line;
+			try {
+				File classFile = null;
+				if (ClassFiles.isClassFilePath(request.line)) {
+					classFile = new File(request.line).getAbsoluteFile();
+					name = ClassFiles.classNameOf(classFile);
+				}
+
+				String key = null;
+				Verdict verdict = null;
+				byte[] bytecode = readBytecode(name, classFile);
+				if (bytecode != null && !ClassFiles.referencesWeld(bytecode)) {
+					// nothing to verify, so don't even load it
+					Stats.add("prescan.skipped", 1);
+					verdict = new Verdict();
+				} else if (cache != null && bytecode != null) {
+					key = Verifier.cacheKey(bytecode, config);
+					verdict = Verifier.lookupVerdict(cache, key);
+				}
+				if (verdict == null) {
+					prepareScene(name, classFile);
+					verdict = verify(name);
+					if (key != null)
+						Verifier.storeVerdict(cache, key, verdict);
+				}
+				synchronized (request.out) {
+					verdict.print(request.out, name);
+				}
+			} catch (Throwable e) {
+				// e.g. a StackOverflowError deep in Soot, which shouldn't take the server down with it
+				synchronized (request.out) {
+					request.out.println(name + " ERROR " + e);
+				}
+				// whatever went wrong might have left Soot in a bad state
+				resetScene();
+			} finally {
+				if (request.connection != null)
+					request.connection.answered();
+			}
+			Logger.log("Answered", request.line, "in", (System.nanoTime() - start) / 1000000, "ms");
+		}
+	}
+
+	private byte[] readBytecode(String name, File classFile) {
+		if (classFile == null)
+			return ClassFiles.read(name, Scene.v().getSootClassPath());
+		try {
+			return ClassFiles.readFile(classFile);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	// makes sure the Scene can load the requested class (given by name, or by path if classFile is set) and won't use a stale version of it
+	private void prepareScene(String name, File classFile) {
+		if (classFile != null) {
+			if (classPathDirs.add(classFile.getParent()))
+				resetScene();
+		} else {
+			classFile = ClassFiles.locate(name, Scene.v().getSootClassPath());
+		}
+
+		long stamp = classFile == null ? 0 : classFile.lastModified();
+		Long loadedStamp = loaded.get(name);
+		if (loadedStamp != null && loadedStamp != stamp)
+			resetScene();
+		loaded.put(name, stamp);
+	}
+
+	private void resetScene() {
+		G.reset();
+		loaded.clear();
+		if (!classPathDirs.isEmpty()) {
+			StringBuilder classPath = new StringBuilder();
+			for (String dir : classPathDirs)
+				classPath.append(dir).append(File.pathSeparator);
+			Scene.v().setSootClassPath(classPath + Scene.v().defaultClassPath());
+		}
+	}
+
+	private Verdict verify(String name) {
+		SootClass c = Verifier.loadClass(name);
+		PAG pointsToAnalysis = Verifier.doPointsToAnalysis(Collections.singletonList(c));
+		return Verifier.verifyClass(c, pointsToAnalysis, workers, config, cache);
+	}
+
+	private void shutdown() {
+		if (workers != null)
+			workers.shutdownNow();
+		Stats.print(System.err);
+	}
+}
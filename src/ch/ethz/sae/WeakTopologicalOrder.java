@@ -0,0 +1,88 @@
+package ch.ethz.sae;
+
+import java.util.*;
+
+import soot.toolkits.graph.DirectedGraph;
+
+// Bourdoncle's weak topological ordering: the nodes in order, with every cycle nested in a component headed by the node to widen at
+public class WeakTopologicalOrder<N> {
+
+	// a single node, or a component consisting of its head followed by the ordering of the rest of it
+	static class Element<N> {
+		final N head;
+		final List<Element<N>> body;
+
+		Element(N head, List<Element<N>> body) {
+			this.head = head;
+			this.body = body;
+		}
+
+		boolean isComponent() {
+			return body != null;
+		}
+
+		public String toString() {
+			return isComponent() ? "(" + head + " " + body + ")" : String.valueOf(head);
+		}
+	}
+
+	final List<Element<N>> elements = new LinkedList<Element<N>>();
+
+	private final DirectedGraph<N> graph;
+	private final HashMap<N, Integer> dfn = new HashMap<N, Integer>();
+	private final Deque<N> stack = new ArrayDeque<N>();
+	private int num = 0;
+
+	public WeakTopologicalOrder(DirectedGraph<N> graph) {
+		this.graph = graph;
+		for (N head : graph.getHeads())
+			if (dfn(head) == 0)
+				visit(head, elements);
+	}
+
+	private int dfn(N node) {
+		Integer n = dfn.get(node);
+		return n == null ? 0 : n;
+	}
+
+	// returns the depth-first number of the earliest node on the stack reachable from v
+	private int visit(N v, List<Element<N>> partition) {
+		stack.push(v);
+		dfn.put(v, ++num);
+		int head = num;
+		boolean loop = false;
+		for (N w : graph.getSuccsOf(v)) {
+			int min = dfn(w) == 0 ? visit(w, partition) : dfn(w);
+			if (min <= head) {
+				head = min;
+				loop = true;
+			}
+		}
+		if (head == dfn(v)) {
+			dfn.put(v, Integer.MAX_VALUE);
+			N element = stack.pop();
+			if (loop) {
+				while (element != v) {
+					dfn.put(element, 0);
+					element = stack.pop();
+				}
+				partition.add(0, component(v));
+			} else {
+				partition.add(0, new Element<N>(v, null));
+			}
+		}
+		return head;
+	}
+
+	private Element<N> component(N v) {
+		List<Element<N>> body = new LinkedList<Element<N>>();
+		for (N w : graph.getSuccsOf(v))
+			if (dfn(w) == 0)
+				visit(w, body);
+		return new Element<N>(v, body);
+	}
+
+	public String toString() {
+		return elements.toString();
+	}
+}
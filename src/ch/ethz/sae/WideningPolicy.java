@@ -0,0 +1,16 @@
+package ch.ethz.sae;
+
+import soot.Unit;
+
+// decides when the analysis stops joining and starts widening at a loop head; every analysis needs its own
+public interface WideningPolicy {
+
+	// called for every statement the analysis processes
+	void visited(Unit op);
+
+	// called when the analysis starts iterating the loop at head anew, e.g. a nested loop on every round of the enclosing one
+	void entered(Unit head);
+
+	// called whenever states meet at a loop head again; true to widen instead of joining
+	boolean widen(Unit head);
+}